@@ -3,6 +3,8 @@ package song.pan.etl.common.util;
 import song.pan.etl.common.exception.SystemException;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -39,5 +41,19 @@ public class ConcurrentUtils {
         }
     }
 
+    /**
+     * @return result of the future, its own exception if failed
+     */
+    public static <T> T join(CompletableFuture<T> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SystemException(e.getCause());
+        }
+    }
+
 
 }
@@ -5,6 +5,7 @@ import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import song.pan.etl.common.util.CacheHolder;
 import song.pan.etl.common.web.ApiResponse;
@@ -12,6 +13,7 @@ import song.pan.etl.controller.vo.ETLConfigVO;
 import song.pan.etl.rdbms.ConnectionProperties;
 import song.pan.etl.rdbms.RdbmsServer;
 import song.pan.etl.rdbms.RdbmsServerFactory;
+import song.pan.etl.rdbms.RdbmsServerRegistry;
 import song.pan.etl.rdbms.element.Table;
 import song.pan.etl.service.ETLService;
 import song.pan.etl.service.domain.ETLConfig;
@@ -70,10 +72,7 @@ public class ETLController {
         BeanUtils.copyProperties(vo.getSetting(), config);
 
         // source server
-        ConnectionProperties srcProp = new ConnectionProperties();
-        BeanUtils.copyProperties(source, srcProp);
-
-        RdbmsServer sourceServer = RdbmsServerFactory.getServer(srcProp);
+        RdbmsServer sourceServer = serverOf(source);
         config.setSourceServer(sourceServer);
 
         config.setPaginationKeys(source.getPaginationKeys());
@@ -91,10 +90,13 @@ public class ETLController {
         config.setSourceTable(srcTable);
 
         // destination server
-        ConnectionProperties destProp = new ConnectionProperties();
-        BeanUtils.copyProperties(destination, destProp);
-
-        RdbmsServer destServer = RdbmsServerFactory.getServer(destProp);
+        RdbmsServer destServer;
+        try {
+            destServer = serverOf(destination);
+        } catch (RuntimeException e) {
+            RdbmsServerRegistry.release(sourceServer);
+            throw e;
+        }
         config.setDestServer(destServer);
 
         config.setTargetTablePostScripts(destination.getTargetTablePostScripts());
@@ -112,4 +114,18 @@ public class ETLController {
         return config;
     }
 
+
+    /**
+     * A server registered by name is referred without url, the task has a pool of its own either way,
+     * as its channels hold their connections until the task ends
+     */
+    RdbmsServer serverOf(ETLConfigVO.CommonDatabaseProperties properties) {
+        if (!StringUtils.hasText(properties.getUrl()) && StringUtils.hasText(properties.getName())) {
+            return RdbmsServerRegistry.open(properties.getName());
+        }
+        ConnectionProperties connectionProperties = new ConnectionProperties();
+        BeanUtils.copyProperties(properties, connectionProperties);
+        return RdbmsServerFactory.getServer(connectionProperties);
+    }
+
 }
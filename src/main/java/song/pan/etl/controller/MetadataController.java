@@ -9,7 +9,7 @@ import song.pan.etl.common.util.CacheHolder;
 import song.pan.etl.common.web.ApiResponse;
 import song.pan.etl.rdbms.ConnectionProperties;
 import song.pan.etl.rdbms.RdbmsServer;
-import song.pan.etl.rdbms.RdbmsServerFactory;
+import song.pan.etl.rdbms.RdbmsServerRegistry;
 import song.pan.etl.rdbms.element.Column;
 import song.pan.etl.rdbms.element.Index;
 import song.pan.etl.rdbms.element.Table;
@@ -47,6 +47,8 @@ public class MetadataController {
         Assert.hasText(properties.getName(), "server name must be specified");
         Assert.isNull(CacheHolder.get(CacheHolder.CacheType.SERVER, properties.getName()), "server already exists");
 
+        // connections are warmed up before the server is available
+        RdbmsServerRegistry.register(properties);
         CacheHolder.set(CacheHolder.CacheType.SERVER, properties.getName(), properties);
         return ApiResponse.ok(properties);
     }
@@ -58,6 +60,8 @@ public class MetadataController {
         Assert.notNull(properties, "properties must not be null");
         Assert.hasText(properties.getName(), "server name must be specified");
         Assert.notNull(CacheHolder.get(CacheHolder.CacheType.SERVER, properties.getName()), "server not found");
+        // connections of the old properties are closed once released
+        RdbmsServerRegistry.register(properties);
         CacheHolder.set(CacheHolder.CacheType.SERVER, properties.getName(), properties);
         return ApiResponse.ok(properties);
     }
@@ -69,6 +73,7 @@ public class MetadataController {
         ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, server);
         Assert.notNull(properties, "server not found: " + server);
         CacheHolder.remove(CacheHolder.CacheType.SERVER, server);
+        RdbmsServerRegistry.remove(server);
         return ApiResponse.ok(properties);
     }
 
@@ -76,13 +81,11 @@ public class MetadataController {
     @GetMapping("/v1/servers/{server}/catalogs")
     @ApiOperation("Retrieve catalogs")
     public ApiResponse<List<String>> catalogsOf(@PathVariable("server") String server) {
-        ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, server);
-        Assert.notNull(properties, "server not found: " + server);
-        RdbmsServer rdbmsServer = RdbmsServerFactory.getServer(properties);
+        RdbmsServer rdbmsServer = RdbmsServerRegistry.acquire(server);
         try {
             return ApiResponse.ok(rdbmsServer.catalogs());
         } finally {
-            rdbmsServer.disconnect();
+            RdbmsServerRegistry.release(rdbmsServer);
         }
 
     }
@@ -90,13 +93,11 @@ public class MetadataController {
     @GetMapping("/v1/servers/{server}/catalogs/{catalog}/tables")
     @ApiOperation("Retrieve catalog")
     public ApiResponse<List<String>> tablesOf(@PathVariable("server") String server, @PathVariable("catalog") String catalog) {
-        ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, server);
-        Assert.notNull(properties, "server not found: " + server);
-        RdbmsServer rdbmsServer = RdbmsServerFactory.getServer(properties);
+        RdbmsServer rdbmsServer = RdbmsServerRegistry.acquire(server);
         try {
             return ApiResponse.ok(rdbmsServer.tablesOf(catalog));
         } finally {
-            rdbmsServer.disconnect();
+            RdbmsServerRegistry.release(rdbmsServer);
         }
     }
 
@@ -104,13 +105,11 @@ public class MetadataController {
     @GetMapping("/v1/servers/{server}/catalogs/{catalog}/tables/{table}/columns")
     @ApiOperation("Retrieve columns")
     public ApiResponse<List<Column>> columnsOf(@PathVariable("server") String server, @PathVariable("catalog") String catalog, @PathVariable("table") String table) {
-        ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, server);
-        Assert.notNull(properties, "server not found: " + server);
-        RdbmsServer rdbmsServer = RdbmsServerFactory.getServer(properties);
+        RdbmsServer rdbmsServer = RdbmsServerRegistry.acquire(server);
         try {
             return ApiResponse.ok(rdbmsServer.columnsOf(new Table(catalog, table)));
         } finally {
-            rdbmsServer.disconnect();
+            RdbmsServerRegistry.release(rdbmsServer);
         }
     }
 
@@ -118,14 +117,12 @@ public class MetadataController {
     @ApiOperation("Retrieve column")
     public ApiResponse<Column> columnOf(@PathVariable("server") String server, @PathVariable("catalog") String catalog,
                                               @PathVariable("table") String table, @PathVariable("column") String column) {
-        ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, server);
-        Assert.notNull(properties, "server not found: " + server);
-        RdbmsServer rdbmsServer = RdbmsServerFactory.getServer(properties);
+        RdbmsServer rdbmsServer = RdbmsServerRegistry.acquire(server);
         try {
             return ApiResponse.ok(rdbmsServer.columnsOf(new Table(catalog, table))
                     .stream().filter(c -> c.getName().equals(column)).findAny().orElse(null));
         } finally {
-            rdbmsServer.disconnect();
+            RdbmsServerRegistry.release(rdbmsServer);
         }
     }
 
@@ -133,13 +130,11 @@ public class MetadataController {
     @GetMapping("/v1/servers/{server}/catalogs/{catalog}/tables/{table}/indexes")
     @ApiOperation("Retrieve indexes")
     public ApiResponse<List<Index>> indexesOf(@PathVariable("server") String server, @PathVariable("catalog") String catalog, @PathVariable("table") String table) {
-        ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, server);
-        Assert.notNull(properties, "server not found: " + server);
-        RdbmsServer rdbmsServer = RdbmsServerFactory.getServer(properties);
+        RdbmsServer rdbmsServer = RdbmsServerRegistry.acquire(server);
         try {
             return ApiResponse.ok(rdbmsServer.indexesOf(new Table(catalog, table)));
         } finally {
-            rdbmsServer.disconnect();
+            RdbmsServerRegistry.release(rdbmsServer);
         }
     }
 
@@ -148,14 +143,12 @@ public class MetadataController {
     @ApiOperation("Retrieve index")
     public ApiResponse<Index> indexOf(@PathVariable("server") String server, @PathVariable("catalog") String catalog,
                                       @PathVariable("table") String table, @PathVariable("table") String index) {
-        ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, server);
-        Assert.notNull(properties, "server not found: " + server);
-        RdbmsServer rdbmsServer = RdbmsServerFactory.getServer(properties);
+        RdbmsServer rdbmsServer = RdbmsServerRegistry.acquire(server);
         try {
             return ApiResponse.ok(rdbmsServer.indexesOf(new Table(catalog, table))
                     .stream().filter(c -> c.getName().equals(index)).findAny().orElse(null));
         } finally {
-            rdbmsServer.disconnect();
+            RdbmsServerRegistry.release(rdbmsServer);
         }
     }
 
@@ -2,13 +2,10 @@ package song.pan.etl.controller;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
-import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.*;
-import song.pan.etl.common.util.CacheHolder;
 import song.pan.etl.common.web.ApiResponse;
-import song.pan.etl.rdbms.ConnectionProperties;
 import song.pan.etl.rdbms.RdbmsServer;
-import song.pan.etl.rdbms.RdbmsServerFactory;
+import song.pan.etl.rdbms.RdbmsServerRegistry;
 
 /**
  * @author Song Pan
@@ -23,13 +20,11 @@ public class SQLCommander {
     @PostMapping("/v1/servers/{server}/queries")
     @ApiOperation("execute query")
     public ApiResponse<Long> execute(@PathVariable("server") String server, @RequestBody String query) {
-        ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, server);
-        Assert.notNull(properties, "server not found: " + server);
-        RdbmsServer rdbmsServer = RdbmsServerFactory.getServer(properties);
+        RdbmsServer rdbmsServer = RdbmsServerRegistry.acquire(server);
         try {
-            return ApiResponse.ok(rdbmsServer.execute(query));
+            return ApiResponse.ok(rdbmsServer.executeDetached(query));
         } finally {
-            rdbmsServer.disconnect();
+            RdbmsServerRegistry.release(rdbmsServer);
         }
     }
 
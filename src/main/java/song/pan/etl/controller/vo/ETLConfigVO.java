@@ -7,7 +7,9 @@ import song.pan.etl.rdbms.ConnectionProperties;
 import song.pan.etl.rdbms.element.Column;
 import song.pan.etl.service.domain.BatchInsertStrategy;
 import song.pan.etl.service.domain.ConflictStrategy;
+import song.pan.etl.service.domain.PageLayout;
 import song.pan.etl.service.domain.PaginationStrategy;
+import song.pan.etl.service.domain.WorkloadEstimation;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -58,13 +60,23 @@ public class ETLConfigVO {
     @Setter
     public static class RuntimeSetting {
         private int channel;
+        private int extractChannel;
+        private int loadChannel;
         private String replicaDatabase;
         private long extractChunkSize;
         private long loadChunkSize;
+        private boolean adaptiveChunkSize;
+        private long targetPageTimeMs;
+        private long memoryBudgetMb;
+        private int maxPagesInFlight;
         private boolean clear;
         private ConflictStrategy conflictStrategy;
         private PaginationStrategy paginationStrategy;
+        private WorkloadEstimation workloadEstimation;
         private BatchInsertStrategy batchInsertStrategy;
+        private int bulkLoadBatchSize;
+        private boolean bulkLoadTableLock;
+        private PageLayout pageLayout;
     }
 
 }
@@ -4,7 +4,10 @@ import com.zaxxer.hikari.HikariDataSource;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
 import song.pan.etl.common.exception.IllegalArgumentException;
 import song.pan.etl.common.exception.SystemException;
 import song.pan.etl.common.util.AESUtils;
@@ -15,7 +18,10 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +33,12 @@ import java.util.stream.Collectors;
 @Slf4j
 public abstract class AbstractRdbmsServer implements RdbmsServer {
 
+    /**
+     * Sample size of a histogram, the bounds of a bucket are close enough with a few hundred rows
+     */
+    protected static final long SAMPLE_ROWS_PER_BUCKET = 200;
+    protected static final long MIN_SAMPLE_ROWS = 100000;
+
 
     private DataSource dataSource;
 
@@ -67,9 +79,27 @@ public abstract class AbstractRdbmsServer implements RdbmsServer {
         if (connectionProperties.getMaxPoolSize() > 0) {
             dataSource.setMaximumPoolSize(connectionProperties.getMaxPoolSize());
         }
+
+        // settings given in url take precedence
+        driverProperties().forEach((key, value) -> {
+            if (!connectionProperties.getUrl().contains(key + "=")) {
+                dataSource.addDataSourceProperty(key, value);
+            }
+        });
         return dataSource;
     }
 
+
+    /**
+     * Driver properties applied to every connection unless set in url,
+     * e.g. switch on server-side prepared statements
+     *
+     * @return driver properties, empty by default
+     */
+    protected Map<String, String> driverProperties() {
+        return Collections.emptyMap();
+    }
+
     @Override
     public DataSource getDataSource() {
         synchronized (AbstractRdbmsServer.class) {
@@ -116,11 +146,15 @@ public abstract class AbstractRdbmsServer implements RdbmsServer {
     @Override
     public void disconnect() {
         log.info("[{}] Disconnect from {}", getType(), this);
-        Optional.ofNullable(dataSource).ifPresent(ds -> {
-            if (ds instanceof HikariDataSource) {
-                ((HikariDataSource) ds).close();
-            }
-        });
+        synchronized (AbstractRdbmsServer.class) {
+            Optional.ofNullable(dataSource).ifPresent(ds -> {
+                if (ds instanceof HikariDataSource) {
+                    ((HikariDataSource) ds).close();
+                }
+            });
+            // connected again on demand
+            dataSource = null;
+        }
     }
 
 
@@ -165,6 +199,11 @@ public abstract class AbstractRdbmsServer implements RdbmsServer {
         return count;
     }
 
+    @Override
+    public long estimateRowCount(Table table) {
+        return -1;
+    }
+
 
     @Override
     public long execute(String sql) {
@@ -174,9 +213,46 @@ public abstract class AbstractRdbmsServer implements RdbmsServer {
 
     @Override
     public long execute(String catalog, String sql) {
-        JdbcTemplate jdbcTemplate = getJdbcTemplate();
-        jdbcTemplate.update("USE " + catalog);
-        return jdbcTemplate.update(sql);
+        return inCatalog(catalog, jdbcTemplate -> jdbcTemplate.update(sql));
+    }
+
+
+    /**
+     * Session state left by the statement, e.g. USE or SET, goes with the connection,
+     * which is evicted from the pool instead of returned
+     */
+    @Override
+    public long executeDetached(String sql) {
+        DataSource dataSource = getDataSource();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return new JdbcTemplate(new SingleConnectionDataSource(connection, true)).update(sql);
+        } finally {
+            if (dataSource instanceof HikariDataSource) {
+                ((HikariDataSource) dataSource).evictConnection(connection);
+            } else {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+    }
+
+
+    /**
+     * Run on one connection switched to the catalog, the catalog it had is restored
+     * before the connection goes back to the pool
+     */
+    protected <T> T inCatalog(String catalog, Function<JdbcTemplate, T> action) {
+        return getJdbcTemplate().execute((ConnectionCallback<T>) connection -> {
+            String original = connection.getCatalog();
+            connection.setCatalog(catalog);
+            try {
+                return action.apply(new JdbcTemplate(new SingleConnectionDataSource(connection, true)));
+            } finally {
+                if (null != original) {
+                    connection.setCatalog(original);
+                }
+            }
+        });
     }
 
 
@@ -184,9 +260,13 @@ public abstract class AbstractRdbmsServer implements RdbmsServer {
     public List<Column> columnsOf(String query) {
         LinkedList<Column> columns = new LinkedList<>();
         try (Connection connection = getDataSource().getConnection();
-             PreparedStatement statement = connection.prepareStatement("SELECT * FROM (" + query + ") tbl")) {
-            statement.execute();
+             PreparedStatement statement = connection.prepareStatement(selectNone(query))) {
+            // described by the server on prepare, the probe is run only if the driver can not
             ResultSetMetaData metaData = statement.getMetaData();
+            if (null == metaData) {
+                statement.execute();
+                metaData = statement.getResultSet().getMetaData();
+            }
             for (int i = 1; i <= metaData.getColumnCount(); i++) {
                 Column column = new Column();
                 column.setName(metaData.getColumnName(i));
@@ -204,6 +284,13 @@ public abstract class AbstractRdbmsServer implements RdbmsServer {
         return columns;
     }
 
+    /**
+     * Query returning no rows but the same columns, the server plans it without reading any data
+     */
+    protected String selectNone(String query) {
+        return "SELECT * FROM (" + query + ") tbl WHERE 1=0";
+    }
+
     @Override
     public List<String> primaryKeyOf(Table table) {
         return Collections.emptyList();
@@ -227,52 +314,227 @@ public abstract class AbstractRdbmsServer implements RdbmsServer {
     }
 
     @Override
-    public Row lastRowOf(String query, List<String> columns) {
-        Row lastRow = new Row();
+    public List<Object[]> minMaxOf(String query, List<String> columns) {
+        StringBuilder stmt = new StringBuilder("SELECT ");
         for (int i = 0; i < columns.size(); i++) {
-            String ci = columns.get(i);
-            StringBuilder findMax = new StringBuilder("SELECT MAX(").append(ci).append(") FROM (").append(query).append(") t");
-            if (i != 0) {
-                int count = 0;
-                for (Map.Entry<String, Object> entry : lastRow.entrySet()) {
-                    if (count++ == 0) {
-                        findMax.append(" WHERE ");
-                    } else {
-                        findMax.append(" AND ");
-                    }
-                    findMax.append(entry.getKey()).append(" = ").append(format(entry.getValue()));
-                }
-            }
-            Object max = getJdbcTemplate().queryForObject(findMax.toString(), Object.class);
-            lastRow.setColumn(ci, max);
+            stmt.append(i == 0 ? "" : ", ")
+                    .append("MIN(").append(columns.get(i)).append(") MIN_").append(i).append(", ")
+                    .append("MAX(").append(columns.get(i)).append(") MAX_").append(i);
+        }
+        stmt.append(" FROM (").append(query).append(") t");
+
+        Map<String, Object> row = getJdbcTemplate().queryForMap(stmt.toString());
+        List<Object[]> bounds = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            bounds.add(new Object[]{row.get("MIN_" + i), row.get("MAX_" + i)});
         }
-        return lastRow;
+        return bounds;
+    }
+
+    @Override
+    public List<Object> quantilesOf(String query, String column, int buckets, long rows) {
+        return ntileQuantilesOf(query, column, buckets, rows);
+    }
+
+    @Override
+    public boolean isQuantilesSupported() {
+        return true;
+    }
+
+    /**
+     * Equi-depth histogram via window function NTILE, over a sample of
+     * about {@link #SAMPLE_ROWS_PER_BUCKET} rows per bucket instead of sorting all the rows
+     */
+    protected List<Object> ntileQuantilesOf(String query, String column, int buckets, long rows) {
+        long sampleRows = Math.max(MIN_SAMPLE_ROWS, (long) buckets * SAMPLE_ROWS_PER_BUCKET);
+        String sample = rows <= sampleRows ? "SELECT " + column + " FROM (" + query + ") s"
+                : sampleOf("SELECT " + column + " FROM (" + query + ") s", (double) sampleRows / rows);
+        String stmt = "SELECT MAX(" + column + ") UPPER_V FROM (SELECT " + column + ", NTILE(" + buckets + ") OVER (ORDER BY " +
+                column + ") BUCKET_N FROM (" + sample + ") t) h GROUP BY BUCKET_N ORDER BY BUCKET_N";
+        return getJdbcTemplate().queryForList(stmt).stream().map(e -> e.get("UPPER_V")).collect(Collectors.toList());
+    }
+
+    /**
+     * Rows of the query picked at random, each with the probability of the fraction
+     */
+    protected String sampleOf(String query, double fraction) {
+        return "SELECT * FROM (" + query + ") r WHERE RAND() < " + fraction;
+    }
+
+    @Override
+    public List<Row> topRowsOf(String query, long num) {
+        return query(selectTop(query, num));
     }
 
     @Override
     public List<Row> query(String query, Column column, Object startBoundary, Object endBoundary) {
-        return query("SELECT * FROM (" + query + ") t WHERE t." + column.getName() +
-                        " >= " + format(startBoundary) + " AND t." + column.getName() +
-                        " <= " + format(endBoundary));
+        return query(selectBetween(query, column, startBoundary, endBoundary));
     }
 
     @Override
     public List<Row> query(String query, long offset, long limit) {
+        return query(selectOffset(query, offset, limit));
+    }
+
+    @Override
+    public PreparedQuery selectBetween(String query, Column column, Object startBoundary, Object endBoundary) {
+        return new PreparedQuery.Builder()
+                .append("SELECT * FROM (").append(query).append(") t WHERE t.").append(column.getName()).append(" >= ").bind(startBoundary)
+                .append(" AND t.").append(column.getName()).append(" <= ").bind(endBoundary)
+                .build();
+    }
+
+    @Override
+    public PreparedQuery selectOffset(String query, long offset, long limit) {
+        throw new UnsupportedOperationException("Offset paging is not supported by " + getType());
+    }
+
+    /**
+     * No generic default, e.g. windowing by ROW_NUMBER still sorts all the rows before the page for every page,
+     * offset limit falls back to keyset pages instead
+     */
+    @Override
+    public PreparedQuery selectOffset(String query, List<String> keys, List<Object> after, long offset, long limit) {
+        throw new UnsupportedOperationException("Offset paging is not supported by " + getType());
+    }
+
+    @Override
+    public String selectPartition(String query, List<String> columns, int partitions, int partition) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public PreparedQuery selectByKeys(String query, Table keyTable, List<String> keys, String id, long after, long upTo) {
+        PreparedQuery.Builder select = new PreparedQuery.Builder().append("SELECT t.* FROM (").append(query).append(") t JOIN ")
+                .append(fullQualifiedNameOf(keyTable)).append(" r ON ");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                select.append(" AND ");
+            }
+            select.append("t.").append(keys.get(i)).append(" = r.").append(keys.get(i));
+        }
+        return select.append(" WHERE r.").append(id).append(" > ").bind(after)
+                .append(" AND r.").append(id).append(" <= ").bind(upTo).build();
+    }
+
+    @Override
+    public PreparedQuery selectAfter(String query, List<String> keys, List<Object> after, long num) {
+        PreparedQuery.Builder select = new PreparedQuery.Builder().append("SELECT * FROM (").append(query).append(") t");
+        if (null != after) {
+            keysetCondition(select.append(" WHERE "), keys, after, true);
+        }
+        PreparedQuery ordered = select.append(" ORDER BY ").append(String.join(",", keys)).build();
+        return new PreparedQuery(limit(ordered.getSql(), num), ordered.getParameters());
+    }
+
+    @Override
+    public PreparedQuery selectEqual(String query, List<String> keys, List<Object> values) {
+        PreparedQuery.Builder select = new PreparedQuery.Builder().append("SELECT * FROM (").append(query).append(") t WHERE ");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                select.append(" AND ");
+            }
+            select.append(keys.get(i)).append(" = ").bind(values.get(i));
+        }
+        return select.build();
+    }
+
+    @Override
+    public String selectKeys(String query, List<String> keys) {
+        String joined = String.join(",", keys);
+        return "SELECT " + joined + " FROM (" + query + ") t ORDER BY " + joined;
+    }
+
+    @Override
+    public PreparedQuery selectRange(String query, List<String> keys, List<Object> after, List<Object> upTo) {
+        PreparedQuery.Builder select = new PreparedQuery.Builder().append("SELECT * FROM (").append(query).append(") t");
+        if (null != after) {
+            keysetCondition(select.append(" WHERE "), keys, after, true);
+        }
+        if (null != upTo) {
+            keysetCondition(select.append(null == after ? " WHERE " : " AND "), keys, upTo, false);
+        }
+        return select.build();
+    }
+
+    /**
+     * Expand (k1, k2, ...) > (v1, v2, ...) for the servers not supporting row value comparison:
+     * k1 >= v1 AND (k1 > v1 OR (k1 = v1 AND k2 > v2) OR ...),
+     * the leading range on k1 lets an index on the keys be used.
+     * (k1, k2, ...) <= (v1, v2, ...) is expanded in the same way.
+     *
+     * @param condition where the condition is appended to, values are bound as parameters
+     * @param greater {@code true} for key tuple greater than values, otherwise less than or equal to values
+     */
+    protected void keysetCondition(PreparedQuery.Builder condition, List<String> keys, List<Object> values, boolean greater) {
+        String strict = greater ? " > " : " < ";
+        String bound = greater ? " >= " : " <= ";
+        String last = greater ? " > " : " <= ";
+        if (keys.size() == 1) {
+            condition.append(keys.get(0)).append(last).bind(values.get(0));
+            return;
+        }
+        condition.append(keys.get(0)).append(bound).bind(values.get(0))
+                .append(" AND (").append(keys.get(0)).append(strict).bind(values.get(0));
+        for (int i = 1; i < keys.size(); i++) {
+            condition.append(" OR (");
+            for (int j = 0; j < i; j++) {
+                condition.append(keys.get(j)).append(" = ").bind(values.get(j)).append(" AND ");
+            }
+            condition.append(keys.get(i)).append(i == keys.size() - 1 ? last : strict).bind(values.get(i)).append(")");
+        }
+        condition.append(")");
+    }
+
+    /**
+     * Limit an ordered query to its first rows, the order must be kept
+     */
+    protected String limit(String orderedQuery, long num) {
+        return selectTop(orderedQuery, num);
+    }
+
+    @Override
+    public List<Row> query(PreparedQuery query) {
+        return getJdbcTemplate().query(query.getSql(), query::bind, new RowExtractor());
+    }
+
     @Override
     public List<Row> query(String query) {
-        return getJdbcTemplate().queryForList(query).stream().map(Row::fromMap).collect(Collectors.toList());
+        return getJdbcTemplate().query(query, new RowExtractor());
+    }
+
+    @Override
+    public void enableStreaming(Statement statement, int fetchSize) throws SQLException {
+        statement.setFetchSize(fetchSize);
     }
 
     @Override
     public String prepareInsertStatement(Table table) {
+        return prepareInsertStatement(table, 1);
+    }
+
+    @Override
+    public String prepareInsertStatement(Table table, int rows) {
+        String values = table.getColumns().stream().map(e -> "?").collect(Collectors.joining(",", "(", ")"));
         return "INSERT INTO " + fullQualifiedNameOf(table) + "(" +
                 table.getColumns().stream().map(Column::getName).collect(Collectors.joining(",")) +
-                ") VALUES (" +
-                table.getColumns().stream().map(e -> "?").collect(Collectors.joining(",")) +
-                ")";
+                ") VALUES " +
+                String.join(",", Collections.nCopies(rows, values));
+    }
+
+    @Override
+    public int maxInsertRows(Table table, long rowBytes) {
+        return 0;
+    }
+
+    @Override
+    public long bulkLoad(Connection connection, StatementCache statements, Table table, int rows, RowValues values, BulkLoadOptions options) throws SQLException {
+        throw new UnsupportedOperationException("Bulk load not supported by " + getType());
+    }
+
+    @Override
+    public DataSource getBulkLoadDataSource() {
+        return getDataSource();
     }
 
     @Override
@@ -300,18 +562,43 @@ public abstract class AbstractRdbmsServer implements RdbmsServer {
     }
 
 
+    private volatile Map<String, DataType<?>> typesByName;
+    private volatile Map<Integer, DataType<?>> typesByIndex;
+
+
+    /**
+     * Index all the data types by name and type index,
+     * the first declared type wins if duplicated
+     */
+    private void indexDataTypes() {
+        Map<String, DataType<?>> byName = new HashMap<>();
+        Map<Integer, DataType<?>> byIndex = new HashMap<>();
+        for (DataType<?> type : getAllDataTypes()) {
+            byName.putIfAbsent(type.getTypeName().toUpperCase(), type);
+            byIndex.putIfAbsent(type.getTypeIndex(), type);
+        }
+        typesByIndex = byIndex;
+        typesByName = byName;
+    }
+
+
     @Override
     public DataType typeOf(String typeName) {
-        return getAllDataTypes().stream()
-                .filter(type -> type.getTypeName().equalsIgnoreCase(typeName))
-                .findAny().orElse(null);
+        if (null == typeName) {
+            return null;
+        }
+        if (null == typesByName) {
+            indexDataTypes();
+        }
+        return typesByName.get(typeName.toUpperCase());
     }
 
     @Override
     public DataType typeOf(int typeIndex) {
-        return getAllDataTypes().stream()
-                .filter(type -> type.getTypeIndex() == typeIndex)
-                .findAny().orElse(null);
+        if (null == typesByIndex) {
+            indexDataTypes();
+        }
+        return typesByIndex.get(typeIndex);
     }
 
 
@@ -0,0 +1,284 @@
+package song.pan.etl.rdbms;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.*;
+import java.util.function.Function;
+
+/**
+ * A precompiled reader/writer pair of one column, maps the column's
+ * {@link DataType} in source server to its {@link DataType} in destination server.
+ * Values are read with the typed getter of the source type, and bound with the typed
+ * setter of the destination type, if the two types are identical no conversion is made.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public class ColumnCodec {
+
+
+    /**
+     * Java representations of column values
+     */
+    public enum Kind {
+        LONG, INT, DOUBLE, DECIMAL, BIG_INTEGER, STRING, BOOLEAN, BYTES, TIMESTAMP, DATE, TIME, OBJECT;
+
+        public static Kind of(DataType<?> dataType) {
+            return null == dataType ? OBJECT : of(dataType.getCls());
+        }
+
+        public static Kind of(Class<?> cls) {
+            if (long.class == cls || Long.class == cls) {
+                return LONG;
+            }
+            if (int.class == cls || Integer.class == cls || short.class == cls || Short.class == cls || Byte.class == cls) {
+                return INT;
+            }
+            if (double.class == cls || Double.class == cls || float.class == cls || Float.class == cls) {
+                return DOUBLE;
+            }
+            if (BigDecimal.class == cls) {
+                return DECIMAL;
+            }
+            if (BigInteger.class == cls) {
+                return BIG_INTEGER;
+            }
+            if (String.class == cls) {
+                return STRING;
+            }
+            if (boolean.class == cls || Boolean.class == cls) {
+                return BOOLEAN;
+            }
+            if (byte[].class == cls) {
+                return BYTES;
+            }
+            if (Timestamp.class == cls) {
+                return TIMESTAMP;
+            }
+            if (Date.class == cls) {
+                return DATE;
+            }
+            if (Time.class == cls) {
+                return TIME;
+            }
+            return OBJECT;
+        }
+
+        boolean isNumber() {
+            return this == LONG || this == INT || this == DOUBLE || this == DECIMAL || this == BIG_INTEGER;
+        }
+
+        boolean isTemporal() {
+            return this == TIMESTAMP || this == DATE || this == TIME;
+        }
+    }
+
+
+    /**
+     * Read one value from result set, {@code null} if SQL NULL
+     */
+    @FunctionalInterface
+    public interface Reader {
+        Object read(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+
+    /**
+     * Bind one non-null value to statement
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(PreparedStatement ps, int parameterIndex, Object value) throws SQLException;
+    }
+
+
+    private final Kind sourceKind;
+    private final Kind destKind;
+    private final int nullType;
+    private final Reader reader;
+    private final Writer writer;
+
+
+    ColumnCodec(Kind sourceKind, Kind destKind, int nullType) {
+        this.sourceKind = sourceKind;
+        this.destKind = destKind;
+        this.nullType = nullType;
+        this.reader = readerOf(sourceKind);
+        this.writer = writerOf(sourceKind, destKind);
+    }
+
+
+    /**
+     * @param source column type in source server, may be null if unknown
+     * @param dest column type in destination server, may be null if unknown
+     * @param destTypeIndex type index of the destination column, bound with nulls if dest is unknown
+     */
+    public static ColumnCodec of(DataType<?> source, DataType<?> dest, Integer destTypeIndex) {
+        // drivers reject nulls of Types.NULL, unknown types are bound as strings at least
+        int nullType = null != dest ? dest.getTypeIndex() : null != destTypeIndex ? destTypeIndex : Types.VARCHAR;
+        // identity columns are bound as numbers
+        if (nullType == Types.ROWID) {
+            nullType = Types.NUMERIC;
+        }
+        return new ColumnCodec(Kind.of(source), Kind.of(dest), nullType);
+    }
+
+
+    public Object read(ResultSet rs, int columnIndex) throws SQLException {
+        return reader.read(rs, columnIndex);
+    }
+
+
+    public void write(PreparedStatement ps, int parameterIndex, Object value) throws SQLException {
+        if (null == value) {
+            ps.setNull(parameterIndex, nullType);
+        } else {
+            writer.write(ps, parameterIndex, value);
+        }
+    }
+
+
+    public Reader getReader() {
+        return reader;
+    }
+
+
+    public int getNullType() {
+        return nullType;
+    }
+
+
+    /**
+     * @return {@code true} if values are bound as they are read
+     */
+    public boolean isPassThrough() {
+        return sourceKind == destKind;
+    }
+
+
+    @Override
+    public String toString() {
+        return sourceKind + "->" + destKind;
+    }
+
+
+    public static Reader readerOf(Kind kind) {
+        switch (kind) {
+            case LONG:
+                return (rs, i) -> {
+                    long v = rs.getLong(i);
+                    return rs.wasNull() ? null : v;
+                };
+            case INT:
+                return (rs, i) -> {
+                    int v = rs.getInt(i);
+                    return rs.wasNull() ? null : v;
+                };
+            case DOUBLE:
+                return (rs, i) -> {
+                    double v = rs.getDouble(i);
+                    return rs.wasNull() ? null : v;
+                };
+            case BOOLEAN:
+                return (rs, i) -> {
+                    boolean v = rs.getBoolean(i);
+                    return rs.wasNull() ? null : v;
+                };
+            case DECIMAL:
+                return ResultSet::getBigDecimal;
+            case STRING:
+                return ResultSet::getString;
+            case BYTES:
+                return ResultSet::getBytes;
+            case TIMESTAMP:
+                return ResultSet::getTimestamp;
+            case DATE:
+                return ResultSet::getDate;
+            case TIME:
+                return ResultSet::getTime;
+            default:
+                // BIG_INTEGER included, drivers return Long or BigInteger depending on signedness
+                return JdbcUtils::getResultSetValue;
+        }
+    }
+
+
+    static Writer writerOf(Kind source, Kind dest) {
+        // pass-through, the value is already of the destination's java type
+        if (source == dest) {
+            switch (dest) {
+                case LONG:
+                    return (ps, i, v) -> ps.setLong(i, (Long) v);
+                case INT:
+                    return (ps, i, v) -> ps.setInt(i, (Integer) v);
+                case DOUBLE:
+                    return (ps, i, v) -> ps.setDouble(i, (Double) v);
+                case BOOLEAN:
+                    return (ps, i, v) -> ps.setBoolean(i, (Boolean) v);
+                case DECIMAL:
+                    return (ps, i, v) -> ps.setBigDecimal(i, (BigDecimal) v);
+                case STRING:
+                    return (ps, i, v) -> ps.setString(i, (String) v);
+                case BYTES:
+                    return (ps, i, v) -> ps.setBytes(i, (byte[]) v);
+                case TIMESTAMP:
+                    return (ps, i, v) -> ps.setTimestamp(i, (Timestamp) v);
+                case DATE:
+                    return (ps, i, v) -> ps.setDate(i, (Date) v);
+                case TIME:
+                    return (ps, i, v) -> ps.setTime(i, (Time) v);
+                default:
+                    return PreparedStatement::setObject;
+            }
+        }
+
+        // conversions decided by the type pair, no type checks on values
+        if (source.isNumber() && dest.isNumber()) {
+            Function<Number, Object> convert = numberConverterOf(source, dest);
+            return (ps, i, v) -> ps.setObject(i, convert.apply((Number) v));
+        }
+        if (source.isNumber() && dest == Kind.BOOLEAN) {
+            return (ps, i, v) -> ps.setBoolean(i, ((Number) v).intValue() != 0);
+        }
+        if (source.isTemporal() && dest.isTemporal()) {
+            switch (dest) {
+                case TIMESTAMP:
+                    return (ps, i, v) -> ps.setTimestamp(i, new Timestamp(((java.util.Date) v).getTime()));
+                case DATE:
+                    return (ps, i, v) -> ps.setDate(i, new Date(((java.util.Date) v).getTime()));
+                default:
+                    return (ps, i, v) -> ps.setTime(i, new Time(((java.util.Date) v).getTime()));
+            }
+        }
+        if (dest == Kind.STRING && source != Kind.BYTES) {
+            return (ps, i, v) -> ps.setString(i, v.toString());
+        }
+        return PreparedStatement::setObject;
+    }
+
+
+    private static Function<Number, Object> numberConverterOf(Kind source, Kind dest) {
+        switch (dest) {
+            case LONG:
+                return Number::longValue;
+            case INT:
+                return Number::intValue;
+            case DOUBLE:
+                return Number::doubleValue;
+            case BIG_INTEGER:
+                return source == Kind.DECIMAL ? n -> ((BigDecimal) n).toBigInteger() : n -> BigInteger.valueOf(n.longValue());
+            default:
+                // DECIMAL
+                if (source == Kind.DOUBLE) {
+                    return n -> BigDecimal.valueOf(n.doubleValue());
+                }
+                if (source == Kind.BIG_INTEGER) {
+                    return n -> n instanceof BigInteger ? new BigDecimal((BigInteger) n) : BigDecimal.valueOf(n.longValue());
+                }
+                return n -> BigDecimal.valueOf(n.longValue());
+        }
+    }
+
+}
@@ -4,6 +4,11 @@ package song.pan.etl.rdbms;
 import song.pan.etl.common.exception.InvalidSQLException;
 import song.pan.etl.rdbms.element.*;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 
 /**
@@ -106,6 +111,14 @@ public interface RdbmsServer extends AlivenessDetectable, Lifecycle, EasyConnect
     long execute(String catalog, String sql);
 
 
+    /**
+     * Execute a script on a connection not reused afterwards,
+     * for scripts that may change the session of the connection
+     * @param sql script to execute
+     */
+    long executeDetached(String sql);
+
+
     /**
      * Validate query statement
      * @param query query to validate
@@ -172,13 +185,12 @@ public interface RdbmsServer extends AlivenessDetectable, Lifecycle, EasyConnect
 
 
     /**
-     * Order the query results by specified columns,
-     * return the data of the last row
+     * Find the min and max values of the columns in the query results, in one aggregate
      * @param query result set
-     * @param orderBys column names to order by
-     * @return the data of the last row
+     * @param columns columns to find boundaries of
+     * @return {min, max} of each column, in the order of the columns
      */
-    Row lastRowOf(String query, List<String> orderBys);
+    List<Object[]> minMaxOf(String query, List<String> columns);
 
 
     /**
@@ -206,6 +218,151 @@ public interface RdbmsServer extends AlivenessDetectable, Lifecycle, EasyConnect
     List<Row> query(String query);
 
 
+    /**
+     * @return the query results of a statement with parameters
+     */
+    List<Row> query(PreparedQuery query);
+
+
+    /**
+     * Build an equi-depth histogram of a column, each bucket holds about the same number of rows.
+     * A large query is sampled before the rows are ranked, so the bounds are approximate.
+     * @param column column to build histogram on
+     * @param buckets number of buckets
+     * @param rows rows of the query, estimated
+     * @return upper bound of each bucket in ascending order
+     * @throws UnsupportedOperationException if the server can not rank rows
+     */
+    List<Object> quantilesOf(String query, String column, int buckets, long rows);
+
+
+    /**
+     * @return {@code true} if {@link #quantilesOf} can be used
+     */
+    boolean isQuantilesSupported();
+
+
+    /**
+     * Generate a query statement selecting the top rows of the query results
+     * @param num number of rows
+     * @return query statement
+     */
+    String selectTop(String query, long num);
+
+
+    /**
+     * Generate a query statement selecting one page between the start and end boundary
+     * @param column pagination key to split results
+     * @param startBoundary where pagination start from
+     * @param endBoundary where pagination end at
+     * @return query statement with parameters
+     */
+    PreparedQuery selectBetween(String query, Column column, Object startBoundary, Object endBoundary);
+
+
+    /**
+     * Generate a query statement selecting the first rows ordered by the keys,
+     * whose key tuple is greater than the given one, i.e. (k1, k2, ...) > (v1, v2, ...)
+     * @param keys columns to order by
+     * @param after key tuple where the page starts after, null to start from the first row
+     * @param num number of rows
+     * @return query statement with parameters
+     */
+    PreparedQuery selectAfter(String query, List<String> keys, List<Object> after, long num);
+
+
+    /**
+     * Generate a query statement selecting the rows whose key tuple equals to the given one
+     * @param keys columns to compare
+     * @param values key tuple
+     * @return query statement with parameters
+     */
+    PreparedQuery selectEqual(String query, List<String> keys, List<Object> values);
+
+
+    /**
+     * Generate a query statement selecting only the keys of the query results, ordered by the keys
+     * @param keys columns to select
+     * @return query statement
+     */
+    String selectKeys(String query, List<String> keys);
+
+
+    /**
+     * Generate a query statement selecting the rows whose key tuple is
+     * greater than {@code after} and less than or equal to {@code upTo}
+     * @param keys columns to compare
+     * @param after exclusive lower bound, null if unbounded
+     * @param upTo inclusive upper bound, null if unbounded
+     * @return query statement with parameters
+     */
+    PreparedQuery selectRange(String query, List<String> keys, List<Object> after, List<Object> upTo);
+
+
+    /**
+     * Generate a query statement selecting one of the disjoint partitions of
+     * the query results, rows are assigned to partitions by the hash of the columns
+     * @param columns columns to hash
+     * @param partitions number of partitions
+     * @param partition partition to select, from 0 to partitions - 1
+     * @return query statement
+     */
+    String selectPartition(String query, List<String> columns, int partitions, int partition);
+
+
+    /**
+     * Generate a query statement selecting the rows joined with a range of a key table,
+     * the key table holds the keys of the query results and a generated id
+     * @param keyTable key table
+     * @param keys columns to join on
+     * @param id generated id column of the key table
+     * @param after exclusive lower bound of id
+     * @param upTo inclusive upper bound of id
+     * @return query statement with parameters
+     */
+    PreparedQuery selectByKeys(String query, Table keyTable, List<String> keys, String id, long after, long upTo);
+
+
+    /**
+     * Generate a query statement selecting one page via offset and limit
+     * @param offset page start index
+     * @param limit page size
+     * @return query statement with parameters
+     * @throws UnsupportedOperationException if the server can not page the results in a defined order
+     */
+    PreparedQuery selectOffset(String query, long offset, long limit);
+
+
+    /**
+     * Generate a query statement selecting one page ordered by the keys,
+     * skip the offset rows whose key tuple is greater than {@code after} and take the following rows
+     * @param keys unique columns to order by
+     * @param after key tuple where the page continues after, null to start from the first row
+     * @param offset number of rows to skip
+     * @param limit page size
+     * @return query statement with parameters
+     * @throws UnsupportedOperationException if the server has no offset paging of its own
+     */
+    PreparedQuery selectOffset(String query, List<String> keys, List<Object> after, long offset, long limit);
+
+
+    /**
+     * Read the row count of a table from catalog statistics, without scanning the table
+     * @param table table to estimate
+     * @return estimated number of rows, -1 if not available
+     */
+    long estimateRowCount(Table table);
+
+
+    /**
+     * Let the statement fetch rows incrementally instead of
+     * buffering the whole results in driver's memory
+     * @param statement statement not executed yet
+     * @param fetchSize number of rows to fetch per round trip
+     */
+    void enableStreaming(Statement statement, int fetchSize) throws SQLException;
+
+
     /**
      * Prepare insert statement using question mark as placeholder
      * e.g.
@@ -216,6 +373,75 @@ public interface RdbmsServer extends AlivenessDetectable, Lifecycle, EasyConnect
     String prepareInsertStatement(Table table);
 
 
+    /**
+     * Prepare insert statement of multiple rows using question mark as placeholder
+     * e.g.
+     * INSERT INTO TABLE_N(COLUMN_N,COLUMN_M) VALUES (?,?),(?,?)
+     * @param table target table where data insert into
+     * @param rows number of rows the statement carries
+     * @return prepared insert statement
+     */
+    String prepareInsertStatement(Table table, int rows);
+
+
+    /**
+     * Max number of rows one multi-row insert statement could carry,
+     * bounded by the statement size and the number of parameters server accepts
+     * @param table target table where data insert into
+     * @param rowBytes estimated bytes one row takes in the statement
+     * @return max number of rows, 0 if multi-row insert is not supported
+     */
+    int maxInsertRows(Table table, long rowBytes);
+
+
+    /**
+     * Values of the rows to bulk load
+     */
+    @FunctionalInterface
+    interface RowValues {
+        /**
+         * @param row row index
+         * @param column index of the column in target table's columns
+         * @return value, null if SQL NULL
+         */
+        Object valueAt(int row, int column);
+    }
+
+
+    /**
+     * Statements prepared on a connection and kept by the caller, they are not closed after use
+     */
+    @FunctionalInterface
+    interface StatementCache {
+
+        /**
+         * @return the statement of the sql, prepared if not cached yet
+         */
+        PreparedStatement prepare(String sql) throws SQLException;
+    }
+
+
+    /**
+     * Load rows into the table through the server's bulk load path instead of insert statements
+     * @param connection connection to load with, the caller commits
+     * @param statements statements cached on the connection
+     * @param table target table where data load into
+     * @param rows number of rows
+     * @param values values of the rows, in the order of the table's columns
+     * @param options batch size and lock of the load
+     * @return number of rows loaded
+     * @throws UnsupportedOperationException if the server has no bulk load path
+     */
+    long bulkLoad(Connection connection, StatementCache statements, Table table, int rows, RowValues values, BulkLoadOptions options) throws SQLException;
+
+
+    /**
+     * @return data source whose connections {@link #bulkLoad} loads with,
+     * the same as {@link #getDataSource()} unless bulk load is a connection property
+     */
+    DataSource getBulkLoadDataSource();
+
+
     /**
      * Prepare insert statement using column name as placeholder
      * e.g.
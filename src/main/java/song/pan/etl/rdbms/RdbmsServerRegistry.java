@@ -0,0 +1,232 @@
+package song.pan.etl.rdbms;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.Assert;
+import song.pan.etl.common.util.CacheHolder;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Long-lived servers of the names registered through {@code /v1/servers},
+ * shared by metadata requests instead of a new pool per request.
+ * Tasks pin connections for their channels and run scripts, so they open their own pools.
+ * A server is leased while in use, the pool of a server not leased for
+ * {@link #IDLE_TIMEOUT_MINUTES} is closed, and opened again on the next lease.
+ * Registering a name again replaces its server, the old one is closed once released.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+@Slf4j
+public class RdbmsServerRegistry {
+
+
+    static final long IDLE_TIMEOUT_MINUTES = 10;
+
+
+    private static final Map<String, Entry> REGISTERED = new HashMap<>();
+
+    /**
+     * Entries of both registered and replaced servers, by instance
+     */
+    private static final Map<RdbmsServer, Entry> ENTRIES = new IdentityHashMap<>();
+
+    /**
+     * Connects to the server of the properties, replaced by tests
+     */
+    static Function<ConnectionProperties, RdbmsServer> factory = RdbmsServerFactory::getServer;
+
+
+    static {
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rdbms-server-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(RdbmsServerRegistry::evictIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+
+    /**
+     * Connect to the server and share it by name, the old server of the name is replaced
+     * @param properties connection properties with the name
+     */
+    public static void register(ConnectionProperties properties) {
+        Assert.hasText(properties.getName(), "server name must be specified");
+        RdbmsServer server = factory.apply(copyOf(properties));
+        RdbmsServer replaced;
+        synchronized (RdbmsServerRegistry.class) {
+            Entry entry = new Entry(server);
+            ENTRIES.put(server, entry);
+            replaced = retire(REGISTERED.put(properties.getName(), entry));
+        }
+        log.info("[Registry] Server {} registered", properties.getName());
+        Optional.ofNullable(replaced).ifPresent(RdbmsServer::disconnect);
+    }
+
+
+    /**
+     * Stop sharing the server of the name, it is closed once released
+     */
+    public static void remove(String name) {
+        RdbmsServer removed;
+        synchronized (RdbmsServerRegistry.class) {
+            removed = retire(REGISTERED.remove(name));
+        }
+        log.info("[Registry] Server {} removed", name);
+        Optional.ofNullable(removed).ifPresent(RdbmsServer::disconnect);
+    }
+
+
+    /**
+     * Lease the shared server of the name, connect to it if not yet,
+     * each lease must be given back by {@link #release(RdbmsServer)}
+     */
+    public static RdbmsServer acquire(String name) {
+        ConnectionProperties properties = propertiesOf(name);
+
+        synchronized (RdbmsServerRegistry.class) {
+            Entry entry = REGISTERED.get(name);
+            if (null != entry) {
+                return lease(entry);
+            }
+        }
+
+        // registered before the registry, e.g. the built-in ones
+        RdbmsServer server = factory.apply(copyOf(properties));
+        RdbmsServer redundant = null;
+        Entry entry;
+        synchronized (RdbmsServerRegistry.class) {
+            entry = REGISTERED.get(name);
+            if (null == entry) {
+                entry = new Entry(server);
+                ENTRIES.put(server, entry);
+                REGISTERED.put(name, entry);
+            } else {
+                redundant = server;
+            }
+            lease(entry);
+        }
+        Optional.ofNullable(redundant).ifPresent(RdbmsServer::disconnect);
+        return entry.server;
+    }
+
+
+    /**
+     * Connect to the server of the name with a pool not shared,
+     * it is closed by {@link #release(RdbmsServer)}
+     */
+    public static RdbmsServer open(String name) {
+        return factory.apply(copyOf(propertiesOf(name)));
+    }
+
+
+    private static ConnectionProperties propertiesOf(String name) {
+        ConnectionProperties properties = (ConnectionProperties) CacheHolder.get(CacheHolder.CacheType.SERVER, name);
+        Assert.notNull(properties, "server not found: " + name);
+        return properties;
+    }
+
+
+    private static RdbmsServer lease(Entry entry) {
+        entry.leases++;
+        entry.lastUsed = System.currentTimeMillis();
+        entry.idle = false;
+        return entry.server;
+    }
+
+
+    /**
+     * Give back a leased server, a server not in registry is closed at once
+     */
+    public static void release(RdbmsServer server) {
+        synchronized (RdbmsServerRegistry.class) {
+            Entry entry = ENTRIES.get(server);
+            if (null != entry) {
+                entry.leases--;
+                entry.lastUsed = System.currentTimeMillis();
+                if (!entry.retired || entry.leases > 0) {
+                    return;
+                }
+                ENTRIES.remove(server);
+            }
+        }
+        server.disconnect();
+    }
+
+
+    /**
+     * Close the pools not leased for a while and the servers removed from cache
+     */
+    static void evictIdle() {
+        evictIdle(System.currentTimeMillis());
+    }
+
+
+    static void evictIdle(long now) {
+        List<RdbmsServer> removed = new LinkedList<>();
+        long deadline = now - TimeUnit.MINUTES.toMillis(IDLE_TIMEOUT_MINUTES);
+        synchronized (RdbmsServerRegistry.class) {
+            Iterator<Map.Entry<String, Entry>> iterator = REGISTERED.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> registered = iterator.next();
+                Entry entry = registered.getValue();
+                if (null == CacheHolder.get(CacheHolder.CacheType.SERVER, registered.getKey())) {
+                    iterator.remove();
+                    Optional.ofNullable(retire(entry)).ifPresent(removed::add);
+                } else if (entry.leases == 0 && !entry.idle && entry.lastUsed < deadline) {
+                    // closed before any lease, the pool is opened again on demand
+                    log.info("[Registry] Close idle pool of {}", registered.getKey());
+                    entry.idle = true;
+                    entry.server.disconnect();
+                }
+            }
+        }
+        removed.forEach(RdbmsServer::disconnect);
+    }
+
+
+    /**
+     * @return the server to close now if not leased, null otherwise
+     */
+    private static RdbmsServer retire(Entry entry) {
+        if (null == entry) {
+            return null;
+        }
+        entry.retired = true;
+        if (entry.leases > 0) {
+            return null;
+        }
+        ENTRIES.remove(entry.server);
+        return entry.server;
+    }
+
+
+    /**
+     * Servers decrypt the password in place, the registered properties are kept as they are
+     */
+    private static ConnectionProperties copyOf(ConnectionProperties properties) {
+        ConnectionProperties copy = new ConnectionProperties();
+        BeanUtils.copyProperties(properties, copy);
+        return copy;
+    }
+
+
+    private static class Entry {
+        private final RdbmsServer server;
+        private int leases;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean idle;
+        private boolean retired;
+
+        private Entry(RdbmsServer server) {
+            this.server = server;
+        }
+    }
+
+}
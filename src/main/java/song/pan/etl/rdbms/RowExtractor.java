@@ -0,0 +1,43 @@
+package song.pan.etl.rdbms;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+import song.pan.etl.rdbms.element.Row;
+import song.pan.etl.rdbms.element.RowSchema;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read the query results to {@link Row}s sharing one {@link RowSchema}
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public class RowExtractor implements ResultSetExtractor<List<Row>> {
+
+    @Override
+    public List<Row> extractData(ResultSet rs) throws SQLException {
+        RowSchema schema = RowSchema.of(rs.getMetaData());
+        List<Row> rows = new ArrayList<>();
+        while (rs.next()) {
+            rows.add(read(rs, schema));
+        }
+        return rows;
+    }
+
+
+    /**
+     * Read the current row of the result set
+     */
+    public static Row read(ResultSet rs, RowSchema schema) throws SQLException {
+        Object[] values = new Object[schema.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+        }
+        return new Row(schema, values);
+    }
+
+}
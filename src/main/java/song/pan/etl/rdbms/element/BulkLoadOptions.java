@@ -0,0 +1,24 @@
+package song.pan.etl.rdbms.element;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+@Getter
+@Setter
+public class BulkLoadOptions {
+
+    /**
+     * Rows sent to server per batch, 0 to send all the rows in one batch
+     */
+    private int batchSize;
+
+    /**
+     * Lock the whole table while loading instead of locking rows
+     */
+    private boolean tableLock;
+
+}
@@ -0,0 +1,124 @@
+package song.pan.etl.rdbms.element;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.function.Function;
+
+/**
+ * Columnar layout of a group of rows, each column is stored
+ * in a {@link ColumnVector}, an alternative of a list of {@link Row}s.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public class ColumnBatch {
+
+    private final RowSchema schema;
+    private final ColumnVector[] vectors;
+
+    /**
+     * The first row of this batch in the vectors,
+     * not zero if this batch is a slice of another one
+     */
+    private final int offset;
+    private int size;
+
+
+    ColumnBatch(RowSchema schema, ColumnVector[] vectors, int offset, int size) {
+        this.schema = schema;
+        this.vectors = vectors;
+        this.offset = offset;
+        this.size = size;
+    }
+
+
+    /**
+     * Create an empty batch matching the result set columns
+     * @param metaData result set meta data
+     * @param javaTypeOf find the java class by column type name, null if unknown
+     * @param capacity expected number of rows
+     */
+    public static ColumnBatch of(ResultSetMetaData metaData, Function<String, Class<?>> javaTypeOf, int capacity) throws SQLException {
+        RowSchema schema = RowSchema.of(metaData);
+        ColumnVector[] vectors = new ColumnVector[schema.size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = ColumnVector.of(javaTypeOf.apply(metaData.getColumnTypeName(i + 1)),
+                    metaData.getColumnType(i + 1), metaData.isSigned(i + 1), capacity);
+        }
+        return new ColumnBatch(schema, vectors, 0, 0);
+    }
+
+
+    /**
+     * Append the current row of the result set
+     */
+    public void read(ResultSet rs) throws SQLException {
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i].read(rs, i + 1, offset + size);
+        }
+        size++;
+    }
+
+
+    /**
+     * Bind one value to the statement
+     * @param ps statement to bind
+     * @param parameterIndex 1-based parameter index
+     * @param ordinal column ordinal in the schema
+     * @param row row index in this batch
+     * @param sqlType sql type to use if the value is null
+     */
+    public void bind(PreparedStatement ps, int parameterIndex, int ordinal, int row, int sqlType) throws SQLException {
+        vectors[ordinal].bind(ps, parameterIndex, offset + row, sqlType);
+    }
+
+
+    public Object get(int row, int ordinal) {
+        return vectors[ordinal].get(offset + row);
+    }
+
+
+    /**
+     * Box one row, only for the paths that need random access by name
+     */
+    public Row rowAt(int row) {
+        Object[] values = new Object[vectors.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = get(row, i);
+        }
+        return new Row(schema, values);
+    }
+
+
+    /**
+     * A view of part of this batch, sharing the same vectors
+     * @param from first row, inclusive
+     * @param to last row, exclusive
+     */
+    public ColumnBatch slice(int from, int to) {
+        return new ColumnBatch(schema, vectors, offset + from, to - from);
+    }
+
+
+    /**
+     * Release memory only used while filling
+     */
+    public void seal() {
+        for (ColumnVector vector : vectors) {
+            vector.seal();
+        }
+    }
+
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+}
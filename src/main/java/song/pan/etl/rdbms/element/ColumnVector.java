@@ -0,0 +1,361 @@
+package song.pan.etl.rdbms.element;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.math.BigInteger;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Values of one column in a {@link ColumnBatch}, primitive values
+ * are kept in primitive arrays with a null bitmap and read/bind with
+ * typed JDBC getters/setters, no boxing is required.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public abstract class ColumnVector {
+
+    protected final BitSet nulls = new BitSet();
+
+
+    /**
+     * Choose a vector by the java class of the column type
+     * @param cls java class declared by {@link song.pan.etl.rdbms.DataType}, may be null
+     * @param sqlType type index from the result set meta data
+     * @param signed if the column is a signed number
+     * @param capacity initial capacity
+     */
+    public static ColumnVector of(Class<?> cls, int sqlType, boolean signed, int capacity) {
+        if (long.class == cls || Long.class == cls) {
+            return new LongVector(capacity);
+        }
+        if (BigInteger.class == cls && sqlType == Types.BIGINT && signed) {
+            return new LongVector(capacity);
+        }
+        if (int.class == cls || Integer.class == cls || short.class == cls || Short.class == cls || Byte.class == cls) {
+            return new IntVector(capacity);
+        }
+        if (double.class == cls || Double.class == cls || float.class == cls || Float.class == cls) {
+            return new DoubleVector(capacity);
+        }
+        if (String.class == cls) {
+            return new StringVector(capacity);
+        }
+        if (Timestamp.class == cls || java.sql.Date.class == cls || Time.class == cls) {
+            return new TemporalVector(cls, capacity);
+        }
+        return new ObjectVector(capacity);
+    }
+
+
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+
+    /**
+     * Read the value of current row from result set
+     * @param rs result set positioned at a row
+     * @param columnIndex 1-based column index
+     * @param row row index in this vector
+     */
+    public abstract void read(ResultSet rs, int columnIndex, int row) throws SQLException;
+
+
+    /**
+     * Bind the value of a row to statement
+     * @param ps statement to bind
+     * @param parameterIndex 1-based parameter index
+     * @param row row index in this vector
+     * @param sqlType sql type to use if the value is null
+     */
+    public void bind(PreparedStatement ps, int parameterIndex, int row, int sqlType) throws SQLException {
+        if (nulls.get(row)) {
+            ps.setNull(parameterIndex, sqlType);
+        } else {
+            bindValue(ps, parameterIndex, row);
+        }
+    }
+
+
+    protected abstract void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException;
+
+
+    /**
+     * @return boxed value of a row, {@code null} if absent
+     */
+    public abstract Object get(int row);
+
+
+    /**
+     * Release memory only used while filling the vector
+     */
+    public void seal() { }
+
+
+    static int grow(int capacity, int row) {
+        return Math.max(capacity * 2, row + 1);
+    }
+
+
+    public static class LongVector extends ColumnVector {
+
+        private long[] values;
+
+        LongVector(int capacity) {
+            values = new long[capacity];
+        }
+
+        @Override
+        public void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = rs.getLong(columnIndex);
+            if (rs.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+            ps.setLong(parameterIndex, values[row]);
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+    }
+
+
+    public static class IntVector extends ColumnVector {
+
+        private int[] values;
+
+        IntVector(int capacity) {
+            values = new int[capacity];
+        }
+
+        @Override
+        public void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = rs.getInt(columnIndex);
+            if (rs.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+            ps.setInt(parameterIndex, values[row]);
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        public int getInt(int row) {
+            return values[row];
+        }
+    }
+
+
+    public static class DoubleVector extends ColumnVector {
+
+        private double[] values;
+
+        DoubleVector(int capacity) {
+            values = new double[capacity];
+        }
+
+        @Override
+        public void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = rs.getDouble(columnIndex);
+            if (rs.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+            ps.setDouble(parameterIndex, values[row]);
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        public double getDouble(int row) {
+            return values[row];
+        }
+    }
+
+
+    /**
+     * Dictionary encoded strings, repeated values of a page
+     * are stored only once and referenced by code
+     */
+    public static class StringVector extends ColumnVector {
+
+        private int[] codes;
+        private final List<String> dictionary;
+        private Map<String, Integer> lookup;
+
+        StringVector(int capacity) {
+            codes = new int[capacity];
+            dictionary = new ArrayList<>();
+            lookup = new HashMap<>();
+        }
+
+        @Override
+        public void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, grow(codes.length, row));
+            }
+            String value = rs.getString(columnIndex);
+            if (null == value) {
+                nulls.set(row);
+                return;
+            }
+            Integer code = lookup.get(value);
+            if (null == code) {
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+            ps.setString(parameterIndex, dictionary.get(codes[row]));
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : dictionary.get(codes[row]);
+        }
+
+        @Override
+        public void seal() {
+            lookup = Collections.emptyMap();
+        }
+    }
+
+
+    /**
+     * Date, time and timestamp values kept as epoch milliseconds,
+     * plus nanoseconds for timestamp
+     */
+    public static class TemporalVector extends ColumnVector {
+
+        private final Class<?> cls;
+        private long[] millis;
+        private int[] nanos;
+
+        TemporalVector(Class<?> cls, int capacity) {
+            this.cls = cls;
+            this.millis = new long[capacity];
+            this.nanos = Timestamp.class == cls ? new int[capacity] : null;
+        }
+
+        @Override
+        public void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row >= millis.length) {
+                millis = Arrays.copyOf(millis, grow(millis.length, row));
+                if (null != nanos) {
+                    nanos = Arrays.copyOf(nanos, millis.length);
+                }
+            }
+            java.util.Date value;
+            if (Timestamp.class == cls) {
+                Timestamp timestamp = rs.getTimestamp(columnIndex);
+                value = timestamp;
+                if (null != timestamp) {
+                    nanos[row] = timestamp.getNanos();
+                }
+            } else if (Time.class == cls) {
+                value = rs.getTime(columnIndex);
+            } else {
+                value = rs.getDate(columnIndex);
+            }
+            if (null == value) {
+                nulls.set(row);
+                return;
+            }
+            millis[row] = value.getTime();
+        }
+
+        @Override
+        protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+            if (Timestamp.class == cls) {
+                ps.setTimestamp(parameterIndex, (Timestamp) get(row));
+            } else if (Time.class == cls) {
+                ps.setTime(parameterIndex, new Time(millis[row]));
+            } else {
+                ps.setDate(parameterIndex, new java.sql.Date(millis[row]));
+            }
+        }
+
+        @Override
+        public Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            if (Timestamp.class == cls) {
+                Timestamp timestamp = new Timestamp(millis[row]);
+                timestamp.setNanos(nanos[row]);
+                return timestamp;
+            }
+            return Time.class == cls ? new Time(millis[row]) : new java.sql.Date(millis[row]);
+        }
+    }
+
+
+    /**
+     * Fallback for the types having no primitive representation
+     */
+    public static class ObjectVector extends ColumnVector {
+
+        private Object[] values;
+
+        ObjectVector(int capacity) {
+            values = new Object[capacity];
+        }
+
+        @Override
+        public void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = JdbcUtils.getResultSetValue(rs, columnIndex);
+            if (null == values[row]) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+            ps.setObject(parameterIndex, values[row]);
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+    }
+
+}
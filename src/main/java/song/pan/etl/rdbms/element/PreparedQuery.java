@@ -0,0 +1,103 @@
+package song.pan.etl.rdbms.element;
+
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A query statement with {@code ?} placeholders and the parameters to bind,
+ * pages of one strategy share the same statement and differ only in parameters,
+ * so the statement is parsed and planned once by the server.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public class PreparedQuery {
+
+    private final String sql;
+    private final List<Object> parameters;
+
+
+    public PreparedQuery(String sql, List<Object> parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+
+    public PreparedQuery(String sql) {
+        this(sql, Collections.emptyList());
+    }
+
+
+    public String getSql() {
+        return sql;
+    }
+
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+
+    /**
+     * Bind all the parameters in order
+     */
+    public void bind(PreparedStatement ps) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = parameters.get(i);
+            // not every driver binds BigInteger, a decimal would be compared with an integer key by conversion
+            if (value instanceof BigInteger) {
+                BigInteger integer = (BigInteger) value;
+                if (integer.bitLength() < Long.SIZE) {
+                    StatementCreatorUtils.setParameterValue(ps, i + 1, Types.BIGINT, integer.longValue());
+                    continue;
+                }
+                // beyond bigint only unsigned bigint of MySQL, where a string would be compared as double
+                value = new BigDecimal(integer);
+            }
+            StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, value);
+        }
+    }
+
+
+    /**
+     * Collects the statement and its parameters
+     */
+    public static class Builder {
+
+        private final StringBuilder sql = new StringBuilder();
+        private final List<Object> parameters = new ArrayList<>();
+
+        public Builder append(Object text) {
+            sql.append(text);
+            return this;
+        }
+
+        /**
+         * Append a placeholder of the value
+         */
+        public Builder bind(Object value) {
+            sql.append('?');
+            parameters.add(value);
+            return this;
+        }
+
+        public PreparedQuery build() {
+            return new PreparedQuery(sql.toString(), parameters);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return sql + " " + parameters;
+    }
+}
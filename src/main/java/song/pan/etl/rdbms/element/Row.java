@@ -1,48 +1,68 @@
 package song.pan.etl.rdbms.element;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import song.pan.etl.common.exception.IllegalArgumentException;
 
 /**
+ * One row of query results, values are stored by column ordinal,
+ * the column names are kept in a {@link RowSchema} shared by all rows.
+ *
  * @author Song Pan
  * @version 1.0.0
  */
 public class Row {
 
-    Map<String, Object> data;
+    private final RowSchema schema;
 
-    public Row() {
-        data = new HashMap<>();
+    private final Object[] values;
+
+    public Row(RowSchema schema) {
+        this(schema, new Object[schema.size()]);
     }
 
-    Row(Map<String, Object> data) {
-        this.data = data;
+    public Row(RowSchema schema, Object[] values) {
+        this.schema = schema;
+        this.values = values;
     }
 
-    public static Row fromMap(Map<String, Object> data) {
-        return new Row(data);
+    public RowSchema getSchema() {
+        return schema;
     }
 
-    public void addAll(Map<String, Object> data) {
-        data.putAll(data);
+    public int size() {
+        return values.length;
     }
 
-    public Object getColumn(String column) {
-        return data.get(column);
+    public Object get(int ordinal) {
+        return values[ordinal];
     }
 
-    public void setColumn(String column, Object value) {
-        data.put(column, value);
+    public void set(int ordinal, Object value) {
+        values[ordinal] = value;
     }
 
-    public Set<Map.Entry<String, Object>> entrySet() {
-        return data.entrySet();
+    public Object getColumn(String column) {
+        int ordinal = schema.ordinalOf(column);
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    public void setColumn(String column, Object value) {
+        int ordinal = schema.ordinalOf(column);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Column not found: " + column + ", schema: " + schema);
+        }
+        values[ordinal] = value;
     }
 
 
     @Override
     public String toString() {
-        return data.toString();
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(schema.nameOf(i)).append('=').append(values[i]);
+        }
+        return sb.append('}').toString();
     }
 }
@@ -0,0 +1,89 @@
+package song.pan.etl.rdbms.element;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Column names of a group of {@link Row}s, shared by all the rows
+ * of one query result, each row only keeps the values by ordinal.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public class RowSchema {
+
+    private final String[] names;
+    private final Map<String, Integer> ordinals;
+    private final Map<String, Integer> lowerCaseOrdinals;
+
+
+    public RowSchema(List<String> names) {
+        this.names = names.toArray(new String[0]);
+        this.ordinals = new HashMap<>(this.names.length * 2);
+        this.lowerCaseOrdinals = new HashMap<>(this.names.length * 2);
+        for (int i = 0; i < this.names.length; i++) {
+            ordinals.putIfAbsent(this.names[i], i);
+            lowerCaseOrdinals.putIfAbsent(this.names[i].toLowerCase(), i);
+        }
+    }
+
+
+    public static RowSchema of(ResultSetMetaData metaData) throws SQLException {
+        List<String> names = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            names.add(metaData.getColumnLabel(i));
+        }
+        return new RowSchema(names);
+    }
+
+
+    public int size() {
+        return names.length;
+    }
+
+
+    public String nameOf(int ordinal) {
+        return names[ordinal];
+    }
+
+
+    /**
+     * Find the ordinal of a column, case-insensitive if no exact match
+     * @param name column name
+     * @return the ordinal, -1 if not found
+     */
+    public int ordinalOf(String name) {
+        Integer ordinal = ordinals.get(name);
+        if (null == ordinal) {
+            ordinal = lowerCaseOrdinals.get(name.toLowerCase());
+        }
+        return null == ordinal ? -1 : ordinal;
+    }
+
+
+    /**
+     * Find the ordinals of the columns
+     * @param columns columns to find
+     * @return ordinals in the same order of columns, -1 if not found
+     */
+    public int[] ordinalsOf(List<String> columns) {
+        int[] result = new int[columns.size()];
+        int i = 0;
+        for (String column : columns) {
+            result[i++] = ordinalOf(column);
+        }
+        return result;
+    }
+
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+
+    @Override
+    public String toString() {
+        return Arrays.toString(names);
+    }
+}
@@ -0,0 +1,95 @@
+package song.pan.etl.rdbms.impl;
+
+import song.pan.etl.rdbms.RdbmsServer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Rows fed to SQL Server bulk copy as an {@code ISQLServerBulkRecord},
+ * the driver is loaded at runtime so the interface is implemented by a proxy.
+ * Values are handed over as they are, one row at a time.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class BulkCopyRecord implements InvocationHandler {
+
+    private final String[] names;
+    private final int[] types;
+    private final int[] precisions;
+    private final int[] scales;
+    private final int rows;
+    private final RdbmsServer.RowValues values;
+
+    private int row = -1;
+
+
+    BulkCopyRecord(String[] names, int[] types, int[] precisions, int[] scales, int rows, RdbmsServer.RowValues values) {
+        this.names = names;
+        this.types = types;
+        this.precisions = precisions;
+        this.scales = scales;
+        this.rows = rows;
+        this.values = values;
+    }
+
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getColumnOrdinals":
+                Set<Integer> ordinals = new LinkedHashSet<>();
+                for (int i = 1; i <= names.length; i++) {
+                    ordinals.add(i);
+                }
+                return ordinals;
+            case "getColumnName":
+                return names[(int) args[0] - 1];
+            case "getColumnType":
+                return types[(int) args[0] - 1];
+            case "getPrecision":
+                return precisions[(int) args[0] - 1];
+            case "getScale":
+                return scales[(int) args[0] - 1];
+            case "isAutoIncrement":
+                return false;
+            case "next":
+                return ++row < rows;
+            case "getRowData":
+                Object[] data = new Object[names.length];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = values.valueAt(row, i);
+                }
+                return data;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "BulkCopyRecord" + "[" + rows + " rows]";
+            default:
+                return defaultValueOf(method.getReturnType());
+        }
+    }
+
+
+    /**
+     * Methods not needed by bulk copy from a record e.g. the ones adding metadata
+     */
+    private static Object defaultValueOf(Class<?> type) {
+        if (boolean.class == type) {
+            return false;
+        }
+        if (int.class == type) {
+            return 0;
+        }
+        if (long.class == type) {
+            return 0L;
+        }
+        return null;
+    }
+
+}
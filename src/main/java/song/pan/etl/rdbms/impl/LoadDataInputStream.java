@@ -0,0 +1,199 @@
+package song.pan.etl.rdbms.impl;
+
+import song.pan.etl.rdbms.RdbmsServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Rows encoded on demand in the default text format of {@code LOAD DATA}:
+ * tab separated fields, newline terminated lines, backslash escapes and NULL as \N.
+ * Bytes are never decoded as text, they are written in hex for binary columns and decoded
+ * by UNHEX in the statement, as unsigned numbers for bit columns, and as they are otherwise.
+ * A few rows are encoded at a time, the rows are never copied as a whole.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class LoadDataInputStream extends InputStream {
+
+    /**
+     * How the bytes of a column are written
+     */
+    enum Field {
+        TEXT,
+        HEX,
+        NUMBER,
+    }
+
+    /**
+     * Bytes encoded before they are read
+     */
+    private static final int BLOCK_BYTES = 8192;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final int rows;
+    private final Field[] fields;
+    private final RdbmsServer.RowValues values;
+
+    private final StringBuilder text = new StringBuilder(BLOCK_BYTES);
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_BYTES * 2);
+    private byte[] buffer = new byte[0];
+    private int position;
+    private int row;
+
+
+    LoadDataInputStream(int rows, Field[] fields, RdbmsServer.RowValues values) {
+        this.rows = rows;
+        this.fields = fields;
+        this.values = values;
+    }
+
+
+    @Override
+    public int read() {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+
+    /**
+     * @return {@code false} if all the rows are read
+     */
+    private boolean fill() {
+        if (position < buffer.length) {
+            return true;
+        }
+        if (row >= rows) {
+            return false;
+        }
+        block.reset();
+        while (row < rows && block.size() + text.length() < BLOCK_BYTES) {
+            encode(row++);
+        }
+        flushText();
+        buffer = block.toByteArray();
+        position = 0;
+        return true;
+    }
+
+
+    private void encode(int row) {
+        for (int column = 0; column < fields.length; column++) {
+            if (column > 0) {
+                text.append('\t');
+            }
+            Object value = values.valueAt(row, column);
+            if (null == value) {
+                text.append("\\N");
+            } else if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                switch (fields[column]) {
+                    case HEX:
+                        for (byte b : bytes) {
+                            text.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+                        }
+                        break;
+                    case NUMBER:
+                        text.append(new BigInteger(1, bytes));
+                        break;
+                    default:
+                        escape(bytes);
+                }
+            } else if (value instanceof Boolean) {
+                text.append((Boolean) value ? '1' : '0');
+            } else if (value instanceof BigDecimal) {
+                text.append(((BigDecimal) value).toPlainString());
+            } else if (value instanceof java.sql.Date || value instanceof java.sql.Time || value instanceof Timestamp) {
+                // local time of JVM, the same as the statement setters
+                text.append(value);
+            } else if (value instanceof java.util.Date) {
+                text.append(new Timestamp(((java.util.Date) value).getTime()));
+            } else {
+                escape(value.toString());
+            }
+        }
+        text.append('\n');
+    }
+
+
+    private void flushText() {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        block.write(bytes, 0, bytes.length);
+        text.setLength(0);
+    }
+
+
+    /**
+     * Raw bytes go straight to the block, only the bytes of the separators are escaped
+     */
+    private void escape(byte[] bytes) {
+        flushText();
+        for (byte b : bytes) {
+            char escaped = escapeOf((char) b);
+            if (0 == escaped) {
+                block.write(b);
+            } else {
+                block.write('\\');
+                block.write(escaped);
+            }
+        }
+    }
+
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            char escaped = escapeOf(c);
+            if (0 == escaped) {
+                text.append(c);
+            } else {
+                text.append('\\').append(escaped);
+            }
+        }
+    }
+
+
+    /**
+     * @return the char after backslash, 0 if not escaped
+     */
+    private static char escapeOf(char c) {
+        switch (c) {
+            case '\\':
+                return '\\';
+            case '\t':
+                return 't';
+            case '\n':
+                return 'n';
+            case '\r':
+                return 'r';
+            case '\0':
+                return '0';
+            default:
+                return 0;
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package song.pan.etl.rdbms.impl;
 
+import com.mysql.cj.jdbc.JdbcStatement;
+import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -9,11 +11,17 @@ import song.pan.etl.common.exception.SystemException;
 import song.pan.etl.rdbms.*;
 import song.pan.etl.rdbms.element.*;
 
+import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.sql.Date;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
 import java.sql.Types;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -76,6 +84,20 @@ public class MySQLServer extends AbstractRdbmsServer {
         return RdbmsType.MYSQL;
     }
 
+
+    /**
+     * Prepare statements on server and cache them per connection,
+     * statements of a channel are then parsed by server only once
+     */
+    @Override
+    protected Map<String, String> driverProperties() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("useServerPrepStmts", "true");
+        properties.put("cachePrepStmts", "true");
+        properties.put("prepStmtCacheSize", "64");
+        return properties;
+    }
+
     /**
      * Table name pattern:
      * - name
@@ -84,6 +106,130 @@ public class MySQLServer extends AbstractRdbmsServer {
     private static final Pattern NOT_CONTAINS_DOT = Pattern.compile("((?!\\.).)*");
     private static final Pattern CATALOG_NAME = Pattern.compile("((?!\\.).)*\\.((?!\\.).)*");
 
+    /**
+     * Max number of placeholders of one prepared statement
+     */
+    private static final int MAX_PREPARED_PARAMETERS = 65535;
+
+    private volatile long maxAllowedPacket;
+
+
+    /**
+     * Rows fit in half of {@code max_allowed_packet}, the other half
+     * leaves room for the statement text and the estimation error
+     */
+    @Override
+    public int maxInsertRows(Table table, long rowBytes) {
+        if (maxAllowedPacket <= 0) {
+            maxAllowedPacket = Optional.ofNullable(getJdbcTemplate().queryForObject("SELECT @@max_allowed_packet", Long.class))
+                    .orElse(4L * 1024 * 1024);
+        }
+        long bySize = maxAllowedPacket / 2 / Math.max(1, rowBytes);
+        long byParameters = MAX_PREPARED_PARAMETERS / Math.max(1, table.getColumns().size());
+        return (int) Math.max(1, Math.min(bySize, byParameters));
+    }
+
+
+    /**
+     * Local infile is negotiated on handshake, so it is allowed only on the connections
+     * of the bulk load pool, unless given in url
+     */
+    private static final String ALLOW_LOAD_LOCAL_INFILE = "allowLoadLocalInfile";
+
+    /**
+     * Server refuses local infile, e.g. {@code local_infile} is off
+     */
+    private static final int ER_NOT_ALLOWED_COMMAND = 1148;
+    private static final int ER_CLIENT_LOCAL_FILES_DISABLED = 3948;
+
+    private DataSource bulkLoadDataSource;
+
+
+    @Override
+    public DataSource getBulkLoadDataSource() {
+        synchronized (this) {
+            if (null == bulkLoadDataSource) {
+                DataSource dataSource = createDataSource();
+                if (dataSource instanceof HikariDataSource && !getConnectionProperties().getUrl().contains(ALLOW_LOAD_LOCAL_INFILE + "=")) {
+                    ((HikariDataSource) dataSource).addDataSourceProperty(ALLOW_LOAD_LOCAL_INFILE, "true");
+                }
+                bulkLoadDataSource = dataSource;
+            }
+        }
+        return bulkLoadDataSource;
+    }
+
+
+    @Override
+    public void disconnect() {
+        super.disconnect();
+        synchronized (this) {
+            if (bulkLoadDataSource instanceof HikariDataSource) {
+                ((HikariDataSource) bulkLoadDataSource).close();
+            }
+            bulkLoadDataSource = null;
+        }
+    }
+
+
+    /**
+     * Stream the rows into {@code LOAD DATA LOCAL INFILE} on a connection of the bulk load pool,
+     * the stream replaces the file server asks for.
+     * Binaries are sent in hex and bits as numbers, both through user variables.
+     * Each batch is one statement, table lock is not supported.
+     */
+    @Override
+    public long bulkLoad(Connection connection, StatementCache statements, Table table, int rows, RowValues values, BulkLoadOptions options) throws SQLException {
+        List<Column> columns = table.getColumns();
+        LoadDataInputStream.Field[] fields = new LoadDataInputStream.Field[columns.size()];
+        List<String> targets = new ArrayList<>();
+        List<String> assignments = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            DataType<?> type = typeOf(column.getType());
+            fields[i] = LoadDataInputStream.Field.TEXT;
+            if (null != type && byte[].class == type.getCls()) {
+                fields[i] = LoadDataInputStream.Field.HEX;
+                targets.add("@c" + i);
+                assignments.add(column.getName() + " = UNHEX(@c" + i + ")");
+            } else if (null != type && Types.BIT == type.getTypeIndex()) {
+                fields[i] = LoadDataInputStream.Field.NUMBER;
+                targets.add("@c" + i);
+                assignments.add(column.getName() + " = CAST(@c" + i + " AS UNSIGNED)");
+            } else {
+                targets.add(column.getName());
+            }
+        }
+        String sql = "LOAD DATA LOCAL INFILE 'page' INTO TABLE " + fullQualifiedNameOf(table) +
+                " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (" +
+                String.join(",", targets) + ")" +
+                (assignments.isEmpty() ? "" : " SET " + String.join(",", assignments));
+
+        int batchSize = options.getBatchSize() > 0 ? options.getBatchSize() : rows;
+        try (Statement statement = connection.createStatement()) {
+            long loaded = 0;
+            for (int from = 0; from < rows; from += batchSize) {
+                int offset = from;
+                int batch = Math.min(batchSize, rows - from);
+                statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(
+                        new LoadDataInputStream(batch, fields, (row, column) -> values.valueAt(offset + row, column)));
+                loaded += statement.executeUpdate(sql);
+            }
+            // errors of local infile are downgraded to warnings, rows are skipped
+            if (loaded != rows) {
+                log.warn("[Mysql#bulkLoad] {} of {} rows loaded into {}, {}", loaded, rows, fullQualifiedNameOf(table),
+                        Optional.ofNullable(statement.getWarnings()).map(Throwable::getMessage).orElse(""));
+            }
+            return loaded;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_NOT_ALLOWED_COMMAND || e.getErrorCode() == ER_CLIENT_LOCAL_FILES_DISABLED) {
+                throw new UnsupportedOperationException("Local infile not allowed: " + e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+
 
     @Override
     public Table fromFullQualifiedName(String name) {
@@ -141,6 +287,20 @@ public class MySQLServer extends AbstractRdbmsServer {
         return cnt > 0;
     }
 
+    /**
+     * TABLE_ROWS is exact for MyISAM, and sampled by InnoDB which may be off by half
+     */
+    @Override
+    public long estimateRowCount(Table table) {
+        try {
+            Long rows = getJdbcTemplate().queryForObject("SELECT TABLE_ROWS FROM information_schema.TABLES t WHERE t.TABLE_SCHEMA = '" +
+                    table.getCatalog() + "' AND t.TABLE_NAME = '" + table.getName() + "' AND t.TABLE_TYPE = 'BASE TABLE'", Long.class);
+            return null == rows ? -1 : rows;
+        } catch (EmptyResultDataAccessException e) {
+            return -1;
+        }
+    }
+
     @Override
     public void renameTable(Table old, String newName) {
         getJdbcTemplate().update("rename table " + old.getCatalog() + "." + old.getName() +
@@ -168,24 +328,42 @@ public class MySQLServer extends AbstractRdbmsServer {
         jdbcTemplate.update(stmt);
     }
 
+    /**
+     * LIMIT 0 returns at once without executing the query
+     */
+    @Override
+    protected String selectNone(String query) {
+        return "SELECT * FROM (" + query + ") tbl LIMIT 0";
+    }
+
     @Override
     public void validate(String query) {
         try {
-            getJdbcTemplate().queryForObject("SELECT 1 FROM (" + query + ") t limit 1", Integer.class);
-        } catch (EmptyResultDataAccessException e) {
-            // empty table
+            getJdbcTemplate().queryForList(selectNone(query));
         } catch (Exception e) {
             throw new InvalidSQLException(e);
         }
     }
 
+    /**
+     * Formatters are immutable and shared, values are formatted in the JVM's time zone as JDBC does
+     */
+    private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
     @Override
     public String format(Object value) {
-        if (value instanceof Date) {
+        if (value instanceof Time) {
+            return "'" + TIME_FORMAT.format(Instant.ofEpochMilli(((Time) value).getTime())) + "'";
+        } else if (value instanceof Date) {
             Date date = (Date) value;
-            return "'" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(date) + "'";
+            return "'" + DATETIME_FORMAT.format(Instant.ofEpochMilli(date.getTime())) + "'";
         } else if (value instanceof CharSequence) {
             return "'" + value + "'";
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
         }
 
         return String.valueOf(value);
@@ -218,9 +396,8 @@ public class MySQLServer extends AbstractRdbmsServer {
     }
 
     @Override
-    public List<Row> topRowsOf(String query, long num) {
-        return getJdbcTemplate().queryForList("SELECT * FROM (" + query + ") t LIMIT " + num)
-                .stream().map(Row::fromMap).collect(Collectors.toList());
+    public String selectTop(String query, long num) {
+        return "SELECT * FROM (" + query + ") t LIMIT " + num;
     }
 
     @Override
@@ -282,9 +459,87 @@ public class MySQLServer extends AbstractRdbmsServer {
         return indices;
     }
 
+    /**
+     * MySQL compares row values natively and ranges over a composite index with it
+     */
+    @Override
+    protected void keysetCondition(PreparedQuery.Builder condition, List<String> keys, List<Object> values, boolean greater) {
+        String operator = greater ? " > " : " <= ";
+        if (keys.size() == 1) {
+            condition.append(keys.get(0)).append(operator).bind(values.get(0));
+            return;
+        }
+        condition.append("(").append(String.join(",", keys)).append(")").append(operator).append("(");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                condition.append(",");
+            }
+            condition.bind(values.get(i));
+        }
+        condition.append(")");
+    }
+
+    /**
+     * Wrapping an ordered query as derived table may lose its order, limit it in place
+     */
+    @Override
+    protected String limit(String orderedQuery, long num) {
+        return orderedQuery + " LIMIT " + num;
+    }
+
+    /**
+     * CONCAT_WS skips null values, the same row always goes to the same partition
+     */
+    @Override
+    public String selectPartition(String query, List<String> columns, int partitions, int partition) {
+        return "SELECT * FROM (" + query + ") t WHERE MOD(CRC32(CONCAT_WS('|', " + String.join(", ", columns) + ")), " +
+                partitions + ") = " + partition;
+    }
+
+    @Override
+    public PreparedQuery selectOffset(String query, long offset, long limit) {
+        return new PreparedQuery.Builder().append(query).append(" limit ").bind(offset).append(", ").bind(limit).build();
+    }
+
+
+    /**
+     * Deferred join, the offset is walked on the keys only, which a covering index serves,
+     * then the page's full rows are joined back by the keys
+     */
+    @Override
+    public PreparedQuery selectOffset(String query, List<String> keys, List<Object> after, long offset, long limit) {
+        String joined = String.join(",", keys);
+        PreparedQuery.Builder select = new PreparedQuery.Builder().append("SELECT t.* FROM (").append(query).append(") t JOIN (SELECT ")
+                .append(joined).append(" FROM (").append(query).append(") k");
+        if (null != after) {
+            keysetCondition(select.append(" WHERE "), keys, after, true);
+        }
+        select.append(" ORDER BY ").append(joined).append(" LIMIT ").bind(offset).append(", ").bind(limit)
+                .append(") p ON ");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                select.append(" AND ");
+            }
+            select.append("t.").append(keys.get(i)).append(" = p.").append(keys.get(i));
+        }
+        select.append(" ORDER BY ");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                select.append(",");
+            }
+            select.append("t.").append(keys.get(i));
+        }
+        return select.build();
+    }
+
+
+    /**
+     * Connector/J reads the whole results into memory unless
+     * the fetch size is {@link Integer#MIN_VALUE}, which streams rows one by one
+     */
     @Override
-    public List<Row> query(String query, long offset, long limit) {
-        return query(query + " limit " + offset + ", " + limit);
+    public void enableStreaming(Statement statement, int fetchSize) throws SQLException {
+        statement.setFetchSize(Integer.MIN_VALUE);
     }
 
 
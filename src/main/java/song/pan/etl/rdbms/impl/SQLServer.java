@@ -1,6 +1,23 @@
 package song.pan.etl.rdbms.impl;
 
+import song.pan.etl.common.exception.SystemException;
+import song.pan.etl.rdbms.DataType;
 import song.pan.etl.rdbms.RdbmsType;
+import song.pan.etl.rdbms.element.BulkLoadOptions;
+import song.pan.etl.rdbms.element.Column;
+import song.pan.etl.rdbms.element.PreparedQuery;
+import song.pan.etl.rdbms.element.Table;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Song Pan
@@ -14,4 +31,175 @@ public class SQLServer extends SybaseServer {
         return RdbmsType.SQL_SERVER;
     }
 
+
+    /**
+     * The driver prepares statements on server by default
+     */
+    @Override
+    protected Map<String, String> driverProperties() {
+        return Collections.emptyMap();
+    }
+
+
+    /**
+     * Rows of the heap or the clustered index of all the partitions
+     */
+    @Override
+    public long estimateRowCount(Table table) {
+        Long rows = getJdbcTemplate().queryForObject("SELECT SUM(p.rows) FROM " + table.getCatalog() + ".sys.partitions p " +
+                "WHERE p.object_id = OBJECT_ID('" + fullQualifiedNameOf(table) + "') AND p.index_id IN (0, 1)", Long.class);
+        return null == rows ? -1 : rows;
+    }
+
+
+    private static final String DRIVER_PACKAGE = "com.microsoft.sqlserver.jdbc.";
+
+
+    /**
+     * Bulk copy is an API of the driver instead of a connection property
+     */
+    @Override
+    public DataSource getBulkLoadDataSource() {
+        return getDataSource();
+    }
+
+
+    /**
+     * Load with SQLServerBulkCopy of the Microsoft driver, which is loaded at runtime,
+     * the copy joins the transaction of the connection, columns are mapped by name
+     */
+    @Override
+    public long bulkLoad(Connection connection, StatementCache statements, Table table, int rows, RowValues values, BulkLoadOptions options) throws SQLException {
+        Class<?> connectionClass;
+        Class<?> bulkCopyClass;
+        Class<?> optionsClass;
+        Class<?> recordClass;
+        try {
+            connectionClass = Class.forName(DRIVER_PACKAGE + "SQLServerConnection");
+            bulkCopyClass = Class.forName(DRIVER_PACKAGE + "SQLServerBulkCopy");
+            optionsClass = Class.forName(DRIVER_PACKAGE + "SQLServerBulkCopyOptions");
+            recordClass = Class.forName(DRIVER_PACKAGE + "ISQLServerBulkRecord");
+        } catch (ClassNotFoundException e) {
+            throw new UnsupportedOperationException("Bulk copy not supported by driver " + getConnectionProperties().getDriver());
+        }
+        if (!connection.isWrapperFor(connectionClass)) {
+            throw new UnsupportedOperationException("Bulk copy not supported by driver " + getConnectionProperties().getDriver());
+        }
+
+        List<Column> columns = table.getColumns();
+        String[] names = new String[columns.size()];
+        int[] types = new int[columns.size()];
+        int[] precisions = new int[columns.size()];
+        int[] scales = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            DataType<?> type = typeOf(column.getType());
+            names[i] = column.getName();
+            types[i] = null == type ? Types.VARCHAR : Types.ROWID == type.getTypeIndex() ? Types.NUMERIC : type.getTypeIndex();
+            // unknown length is sent as max
+            precisions[i] = column.getPrecision() > 0 ? column.getPrecision()
+                    : Types.NUMERIC == types[i] || Types.DECIMAL == types[i] ? 38 : Integer.MAX_VALUE;
+            scales[i] = column.getScale();
+        }
+        Object record = Proxy.newProxyInstance(recordClass.getClassLoader(), new Class<?>[]{recordClass},
+                new BulkCopyRecord(names, types, precisions, scales, rows, values));
+
+        try {
+            Object copyOptions = optionsClass.getConstructor().newInstance();
+            optionsClass.getMethod("setTableLock", boolean.class).invoke(copyOptions, options.isTableLock());
+            if (options.getBatchSize() > 0) {
+                optionsClass.getMethod("setBatchSize", int.class).invoke(copyOptions, options.getBatchSize());
+            }
+
+            Object bulkCopy = bulkCopyClass.getConstructor(Connection.class).newInstance(connection.unwrap(connectionClass));
+            try {
+                bulkCopyClass.getMethod("setBulkCopyOptions", optionsClass).invoke(bulkCopy, copyOptions);
+                bulkCopyClass.getMethod("setDestinationTableName", String.class).invoke(bulkCopy, fullQualifiedNameOf(table));
+                for (int i = 0; i < names.length; i++) {
+                    bulkCopyClass.getMethod("addColumnMapping", int.class, String.class).invoke(bulkCopy, i + 1, names[i]);
+                }
+                writeToServerOf(bulkCopyClass, recordClass).invoke(bulkCopy, record);
+            } finally {
+                bulkCopyClass.getMethod("close").invoke(bulkCopy);
+            }
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SystemException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new SystemException(e);
+        }
+        return rows;
+    }
+
+
+    /**
+     * writeToServer takes ISQLServerBulkRecord in old drivers and its super interface ISQLServerBulkData in new ones
+     */
+    private static Method writeToServerOf(Class<?> bulkCopyClass, Class<?> recordClass) throws NoSuchMethodException {
+        for (Method method : bulkCopyClass.getMethods()) {
+            if ("writeToServer".equals(method.getName()) && method.getParameterCount() == 1
+                    && method.getParameterTypes()[0].isAssignableFrom(recordClass)) {
+                return method;
+            }
+        }
+        throw new NoSuchMethodException("writeToServer(" + recordClass.getName() + ")");
+    }
+
+
+    /**
+     * HASHBYTES takes only one input, CHECKSUM takes any number of columns,
+     * the remainder is shifted to be non-negative since ABS overflows on the min int
+     */
+    @Override
+    public String selectPartition(String query, List<String> columns, int partitions, int partition) {
+        return "SELECT * FROM (" + query + ") t WHERE (CHECKSUM(" + String.join(", ", columns) + ") % " + partitions +
+                " + " + partitions + ") % " + partitions + " = " + partition;
+    }
+
+
+    /**
+     * OFFSET FETCH of SQL Server 2012+ needs an order, without an unique key the pages
+     * running in parallel would overlap or skip rows, hash partitions are used instead
+     */
+    @Override
+    public PreparedQuery selectOffset(String query, long offset, long limit) {
+        throw new UnsupportedOperationException("Offset paging without an unique key is not supported");
+    }
+
+
+    @Override
+    public PreparedQuery selectOffset(String query, List<String> keys, List<Object> after, long offset, long limit) {
+        PreparedQuery.Builder select = new PreparedQuery.Builder().append("SELECT * FROM (").append(query).append(") t");
+        if (null != after) {
+            keysetCondition(select.append(" WHERE "), keys, after, true);
+        }
+        return select.append(" ORDER BY ").append(String.join(",", keys)).append(" OFFSET ").bind(offset)
+                .append(" ROWS FETCH NEXT ").bind(limit).append(" ROWS ONLY").build();
+    }
+
+
+    /**
+     * SQL Server ranks rows by NTILE, unlike Sybase ASE
+     */
+    @Override
+    public List<Object> quantilesOf(String query, String column, int buckets, long rows) {
+        return ntileQuantilesOf(query, column, buckets, rows);
+    }
+
+    @Override
+    public boolean isQuantilesSupported() {
+        return true;
+    }
+
+
+    /**
+     * RAND() is evaluated once per query, NEWID() once per row
+     */
+    @Override
+    protected String sampleOf(String query, double fraction) {
+        return "SELECT * FROM (" + query + ") r WHERE ABS(CHECKSUM(NEWID())) % 1000000 < " + (long) Math.ceil(fraction * 1000000);
+    }
+
 }
@@ -1,6 +1,8 @@
 package song.pan.etl.rdbms.impl;
 
+import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import song.pan.etl.common.exception.IllegalArgumentException;
@@ -11,10 +13,17 @@ import song.pan.etl.rdbms.DataType;
 import song.pan.etl.rdbms.RdbmsType;
 import song.pan.etl.rdbms.element.*;
 
+import javax.sql.DataSource;
 import java.math.BigDecimal;
-import java.sql.Date;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
 import java.sql.Types;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -78,6 +87,94 @@ public class SybaseServer extends AbstractRdbmsServer {
     }
 
 
+    /**
+     * Prepare statements as server dynamic statements
+     */
+    @Override
+    protected Map<String, String> driverProperties() {
+        return Collections.singletonMap("DYNAMIC_PREPARE", "true");
+    }
+
+
+    /**
+     * jConnect switches batch inserts to bulk load by connection property,
+     * fully logged bulk copy is used unless ENABLE_BULK_LOAD is given in url
+     */
+    private static final String ENABLE_BULK_LOAD = "ENABLE_BULK_LOAD";
+
+    private DataSource bulkLoadDataSource;
+
+
+    /**
+     * A separate pool whose connections have bulk load enabled,
+     * ordinary batch inserts of the other connections are untouched
+     */
+    @Override
+    public DataSource getBulkLoadDataSource() {
+        synchronized (this) {
+            if (null == bulkLoadDataSource) {
+                DataSource dataSource = createDataSource();
+                if (dataSource instanceof HikariDataSource && !getConnectionProperties().getUrl().contains(ENABLE_BULK_LOAD + "=")) {
+                    ((HikariDataSource) dataSource).addDataSourceProperty(ENABLE_BULK_LOAD, "LOG_BCP");
+                }
+                bulkLoadDataSource = dataSource;
+            }
+        }
+        return bulkLoadDataSource;
+    }
+
+
+    /**
+     * Batch insert on a bulk load connection, the driver sends the batches with bulk copy
+     */
+    @Override
+    public long bulkLoad(Connection connection, StatementCache statements, Table table, int rows, RowValues values, BulkLoadOptions options) throws SQLException {
+        if (options.isTableLock()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LOCK TABLE " + fullQualifiedNameOf(table) + " IN EXCLUSIVE MODE");
+            }
+        }
+
+        List<Column> columns = table.getColumns();
+        int[] nullTypes = columns.stream().mapToInt(c -> {
+            DataType<?> type = typeOf(c.getType());
+            int typeIndex = null != type ? type.getTypeIndex() : null != c.getTypeIndex() ? c.getTypeIndex() : Types.VARCHAR;
+            return Types.ROWID == typeIndex ? Types.NUMERIC : typeIndex;
+        }).toArray();
+        int batchSize = options.getBatchSize() > 0 ? options.getBatchSize() : rows;
+        // kept by the caller for the next pages, a batch left by a failed page is dropped
+        PreparedStatement statement = statements.prepare(prepareInsertStatement(table));
+        statement.clearBatch();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < nullTypes.length; column++) {
+                Object value = values.valueAt(row, column);
+                if (null == value) {
+                    statement.setNull(column + 1, nullTypes[column]);
+                } else {
+                    statement.setObject(column + 1, value);
+                }
+            }
+            statement.addBatch();
+            if ((row + 1) % batchSize == 0 || row == rows - 1) {
+                statement.executeBatch();
+            }
+        }
+        return rows;
+    }
+
+
+    @Override
+    public void disconnect() {
+        super.disconnect();
+        synchronized (this) {
+            if (bulkLoadDataSource instanceof HikariDataSource) {
+                ((HikariDataSource) bulkLoadDataSource).close();
+            }
+            bulkLoadDataSource = null;
+        }
+    }
+
+
     /**
      * Table name pattern:
      * - name
@@ -157,19 +254,36 @@ public class SybaseServer extends AbstractRdbmsServer {
         return cnt > 0;
     }
 
+    /**
+     * row_count of ASE 15, or rowcnt of the data pages in sysindexes before it
+     */
+    @Override
+    public long estimateRowCount(Table table) {
+        String objectId = "object_id('" + fullQualifiedNameOf(table) + "')";
+        Long rows;
+        try {
+            rows = getJdbcTemplate().queryForObject("SELECT row_count(db_id('" + table.getCatalog() + "'), " + objectId + ")", Long.class);
+        } catch (DataAccessException e) {
+            log.info("[Sybase#estimateRowCount] row_count not available: {}", e.getMessage());
+            try {
+                rows = getJdbcTemplate().queryForObject("SELECT rowcnt(i.doampg) FROM " + table.getCatalog() +
+                        "..sysindexes i WHERE i.id = " + objectId + " AND i.indid < 2", Long.class);
+            } catch (EmptyResultDataAccessException ex) {
+                return -1;
+            }
+        }
+        return null == rows ? -1 : rows;
+    }
+
     @Override
     public void renameTable(Table old, String newName) {
-        JdbcTemplate jdbcTemplate = getJdbcTemplate();
-        jdbcTemplate.update("USE " + old.getCatalog());
-        jdbcTemplate.update("sp_rename " + old.getName() + ", " + newName);
+        inCatalog(old.getCatalog(), jdbcTemplate -> jdbcTemplate.update("sp_rename " + old.getName() + ", " + newName));
     }
 
     @Override
     public void validate(String query) {
         try {
-            getJdbcTemplate().queryForObject("SELECT TOP 1 1 col FROM (" + query + ") t", Integer.class);
-        } catch (EmptyResultDataAccessException e) {
-            // empty table
+            getJdbcTemplate().queryForList(selectNone(query));
         } catch (Exception e) {
             throw new InvalidSQLException(e);
         }
@@ -193,15 +307,32 @@ public class SybaseServer extends AbstractRdbmsServer {
         stmt = "INSERT INTO " + toTable + "(" + joinedNames + ") SELECT " + joinedNames + " FROM (" + query + ") t";
         log.info("[Sybase#copyToGenerateId] {}", stmt);
         jdbcTemplate.update(stmt);
+
+        // pages are selected by id range, identity column has no index by itself
+        stmt = "CREATE UNIQUE INDEX " + to.getName() + "_" + uid + " ON " + toTable + "(" + uid + ")";
+        log.info("[Sybase#copyToGenerateId] {}", stmt);
+        jdbcTemplate.update(stmt);
     }
 
+    /**
+     * Formatters are immutable and shared, values are formatted in the JVM's time zone as JDBC does
+     */
+    private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
     @Override
     public String format(Object value) {
-        if (value instanceof Date) {
+        if (value instanceof Time) {
+            return "Convert(time, '" + TIME_FORMAT.format(Instant.ofEpochMilli(((Time) value).getTime())) + "')";
+        } else if (value instanceof Date) {
             Date date = (Date) value;
-            return "Convert(datetime, '" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(date) + "', 121)";
+            return "Convert(datetime, '" + DATETIME_FORMAT.format(Instant.ofEpochMilli(date.getTime())) + "', 121)";
         } else if (value instanceof CharSequence) {
             return "'" + value + "'";
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
         }
 
         return String.valueOf(value);
@@ -233,18 +364,45 @@ public class SybaseServer extends AbstractRdbmsServer {
         return String.join(" ", column.getName(), type, defaultValue, nullable);
     }
 
+    /**
+     * Sybase ASE has no window functions
+     */
     @Override
-    public List<Row> topRowsOf(String query, long num) {
+    public List<Object> quantilesOf(String query, String column, int buckets, long rows) {
+        throw new UnsupportedOperationException("Window function NTILE is not supported");
+    }
+
+    @Override
+    public boolean isQuantilesSupported() {
+        return false;
+    }
+
+    /**
+     * First 3 bytes of the md5 digest as a non-negative int
+     */
+    @Override
+    public String selectPartition(String query, List<String> columns, int partitions, int partition) {
+        return "SELECT * FROM (" + query + ") t WHERE convert(int, substring(hashbytes('md5', " + String.join(", ", columns) +
+                "), 1, 3)) % " + partitions + " = " + partition;
+    }
+
+    /**
+     * Sybase ASE has neither OFFSET nor window functions
+     */
+    @Override
+    public PreparedQuery selectOffset(String query, List<String> keys, List<Object> after, long offset, long limit) {
+        throw new UnsupportedOperationException("Offset paging is not supported");
+    }
+
+    @Override
+    public String selectTop(String query, long num) {
         int fromIndex = query.toLowerCase().indexOf("select ") + 7;
-        return getJdbcTemplate().queryForList("SELECT TOP " + num + " " + query.substring(fromIndex))
-                .stream().map(Row::fromMap).collect(Collectors.toList());
+        return "SELECT TOP " + num + " " + query.substring(fromIndex);
     }
 
     @Override
     public List<Column> columnsOf(Table table) {
-        JdbcTemplate jdbcTemplate = getJdbcTemplate();
-        jdbcTemplate.update("USE " + table.getCatalog());
-        return jdbcTemplate.queryForList("sp_columns " + table.getName())
+        return inCatalog(table.getCatalog(), jdbcTemplate -> jdbcTemplate.queryForList("sp_columns " + table.getName()))
                 .stream()
                 .map(e -> {
                     Column column = new Column((String) e.get("column_name"), (String) e.get("type_name"));
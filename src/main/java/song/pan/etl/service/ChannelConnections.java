@@ -0,0 +1,146 @@
+package song.pan.etl.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connections pinned to the channels of one task, a channel is the thread running the pages.
+ * Each channel keeps its connection and prepared statements for the life of the task,
+ * so a page of the same statement needs neither borrowing a connection nor preparing again.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+@Slf4j
+class ChannelConnections implements AutoCloseable {
+
+    /**
+     * Statements kept by one channel, the least recently used is closed beyond it
+     */
+    private static final int MAX_STATEMENTS = 16;
+
+    private final DataSource dataSource;
+    private final boolean autoCommit;
+    private final Map<Thread, Channel> channels;
+
+
+    ChannelConnections(DataSource dataSource) {
+        this(dataSource, true);
+    }
+
+
+    /**
+     * @param autoCommit auto-commit mode set once when a channel connects,
+     *                   {@code false} if the channel commits by itself
+     */
+    ChannelConnections(DataSource dataSource, boolean autoCommit) {
+        this.dataSource = dataSource;
+        this.autoCommit = autoCommit;
+        this.channels = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * @return connection of current channel
+     */
+    Connection connection() throws SQLException {
+        return channel().connection();
+    }
+
+
+    /**
+     * @return the cached statement of current channel, prepared if absent
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        return channel().prepare(sql);
+    }
+
+
+    /**
+     * Close the connection of current channel after a failure,
+     * the channel reconnects the next time it is used
+     */
+    void invalidate() {
+        Channel channel = channels.remove(Thread.currentThread());
+        if (null != channel) {
+            channel.close();
+        }
+    }
+
+
+    @Override
+    public void close() {
+        channels.values().forEach(Channel::close);
+        channels.clear();
+    }
+
+
+    private Channel channel() {
+        return channels.computeIfAbsent(Thread.currentThread(), t -> new Channel());
+    }
+
+
+    private class Channel {
+
+        private Connection connection;
+
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > MAX_STATEMENTS) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        Connection connection() throws SQLException {
+            if (null == connection) {
+                connection = dataSource.getConnection();
+                if (connection.getAutoCommit() != autoCommit) {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+            return connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (null == statement) {
+                statement = connection().prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        void close() {
+            statements.values().forEach(this::closeQuietly);
+            statements.clear();
+            if (null != connection) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.warn("[ETL] Close channel connection failed: {}", e.getMessage());
+                }
+                connection = null;
+            }
+        }
+
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.warn("[ETL] Close statement failed: {}", e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package song.pan.etl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import song.pan.etl.service.domain.ETLStatus;
+
+/**
+ * Feedback controller of the page size and the load batch size of one task.
+ * Each extracted page and loaded batch reports its rows and time, the next size
+ * aims at the target latency and a page is capped by its share of the memory budget.
+ * A size moves at most by half or double per step, so one noisy page does not swing it.
+ * If not adaptive, the configured sizes are kept.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+@Slf4j
+class ChunkSizeController {
+
+    /**
+     * Least rows of a page or a batch
+     */
+    static final long MIN_SIZE = 100;
+
+    private final boolean adaptive;
+    private final long targetMs;
+    private final long pageBytes;
+    private final ETLStatus status;
+
+    private volatile long extractChunkSize;
+    private volatile long loadChunkSize;
+
+
+    /**
+     * @param targetMs target time to extract a page or load a batch
+     * @param pageBytes memory budget of one page
+     */
+    ChunkSizeController(boolean adaptive, long extractChunkSize, long loadChunkSize,
+                        long targetMs, long pageBytes, ETLStatus status) {
+        this.adaptive = adaptive;
+        this.targetMs = Math.max(targetMs, 1);
+        this.pageBytes = pageBytes;
+        this.status = status;
+        this.extractChunkSize = extractChunkSize;
+        this.loadChunkSize = loadChunkSize;
+        status.setExtractChunkSize(extractChunkSize);
+        status.setLoadChunkSize(loadChunkSize);
+    }
+
+
+    /**
+     * @return rows of the next page
+     */
+    long extractChunkSize() {
+        return extractChunkSize;
+    }
+
+
+    /**
+     * @return rows of the next load batch
+     */
+    long loadChunkSize() {
+        return loadChunkSize;
+    }
+
+
+    /**
+     * @param rows rows of the page
+     * @param timeMs time the page took to extract
+     * @param rowBytes estimated bytes of one row
+     */
+    synchronized void extracted(long rows, long timeMs, long rowBytes) {
+        if (!adaptive || rows < MIN_SIZE) {
+            return;
+        }
+        long next = next(extractChunkSize, rows, timeMs);
+        if (rowBytes > 0) {
+            next = Math.min(next, Math.max(MIN_SIZE, pageBytes / rowBytes));
+        }
+        if (next != extractChunkSize) {
+            log.info("[ETL] Page size {} -> {}, last page: {} rows in {} ms", extractChunkSize, next, rows, timeMs);
+            extractChunkSize = next;
+            status.setExtractChunkSize(next);
+        }
+    }
+
+
+    /**
+     * @param rows rows of the batch
+     * @param timeMs time the batch took to load
+     */
+    synchronized void loaded(long rows, long timeMs) {
+        if (!adaptive || rows < MIN_SIZE) {
+            return;
+        }
+        // a batch never exceeds a page
+        long next = Math.min(next(loadChunkSize, rows, timeMs), Math.max(extractChunkSize, MIN_SIZE));
+        if (next != loadChunkSize) {
+            log.info("[ETL] Batch size {} -> {}, last batch: {} rows in {} ms", loadChunkSize, next, rows, timeMs);
+            loadChunkSize = next;
+            status.setLoadChunkSize(next);
+        }
+    }
+
+
+    /**
+     * Rows the target time takes at the measured rate, within half and double of current size
+     */
+    private long next(long current, long rows, long timeMs) {
+        long next = (long) (rows * (double) targetMs / Math.max(timeMs, 1));
+        next = Math.max(MIN_SIZE, Math.max(current / 2, Math.min(current * 2, next)));
+        // changes within a fifth are ignored, the size settles instead of drifting page by page
+        return Math.abs(next - current) * 5 < current ? current : next;
+    }
+
+}
@@ -9,14 +9,20 @@ import song.pan.etl.common.util.ConcurrentUtils;
 import song.pan.etl.common.util.MapperUtils;
 import song.pan.etl.rdbms.DataType;
 import song.pan.etl.rdbms.RdbmsServer;
+import song.pan.etl.rdbms.RdbmsServerRegistry;
 import song.pan.etl.rdbms.element.Column;
 import song.pan.etl.rdbms.element.Table;
 import song.pan.etl.service.domain.BatchInsertStrategy;
 import song.pan.etl.service.domain.ConflictStrategy;
 import song.pan.etl.service.domain.ETLConfig;
 import song.pan.etl.service.domain.ETLTask;
+import song.pan.etl.service.domain.PageLayout;
+import song.pan.etl.service.domain.WorkloadEstimation;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -34,16 +40,17 @@ public class ETLService {
 
 
     public void execute(ETLTask task) {
+        try {
+            validate(task);
 
-        validate(task);
-
-        ETLWorker worker = getWorker(task);
+            ETLWorker worker = getWorker(task);
 
-        try {
-            worker.doEtl();
-        } catch (Exception e) {
-            clear(task);
-            throw e;
+            try {
+                worker.doEtl();
+            } catch (Exception e) {
+                clear(task);
+                throw e;
+            }
         } finally {
             close(task);
         }
@@ -55,9 +62,25 @@ public class ETLService {
 
         setDefaults(config);
 
-        feedSourceTable(config);
-
-        config.getSourceServer().validate(config.getQuery());
+        // a given query is validated while its columns are looked up
+        if (StringUtils.hasText(config.getQuery())) {
+            ExecutorService validation = Executors.newSingleThreadExecutor();
+            CompletableFuture<Void> queryValidated = CompletableFuture.runAsync(
+                    () -> config.getSourceServer().validate(config.getQuery()), validation);
+            try {
+                feedSourceTable(config);
+            } catch (RuntimeException e) {
+                // an invalid query is the cause to report
+                ConcurrentUtils.join(queryValidated);
+                throw e;
+            } finally {
+                validation.shutdown();
+            }
+            ConcurrentUtils.join(queryValidated);
+        } else {
+            feedSourceTable(config);
+            config.getSourceServer().validate(config.getQuery());
+        }
 
         feedDestTable(config);
 
@@ -96,18 +119,39 @@ public class ETLService {
         if (0 == config.getChannel()) {
             config.setChannel(5);
         }
+        if (0 == config.getExtractChannel()) {
+            config.setExtractChannel(config.getChannel());
+        }
+        if (0 == config.getLoadChannel()) {
+            config.setLoadChannel(config.getChannel());
+        }
         if (0 == config.getExtractChunkSize()) {
             config.setExtractChunkSize(10000);
         }
         if (0 == config.getLoadChunkSize()) {
             config.setLoadChunkSize(10000);
         }
+        if (0 == config.getTargetPageTimeMs()) {
+            config.setTargetPageTimeMs(2000);
+        }
+        if (0 == config.getMemoryBudgetMb()) {
+            config.setMemoryBudgetMb(512);
+        }
+        if (0 == config.getMaxPagesInFlight()) {
+            config.setMaxPagesInFlight(config.getChannel() * 2);
+        }
         if (null == config.getConflictStrategy()) {
             config.setConflictStrategy(ConflictStrategy.DROP);
         }
+        if (null == config.getWorkloadEstimation()) {
+            config.setWorkloadEstimation(WorkloadEstimation.COUNT);
+        }
         if (null == config.getBatchInsertStrategy()) {
             config.setBatchInsertStrategy(BatchInsertStrategy.JDBC);
         }
+        if (null == config.getPageLayout()) {
+            config.setPageLayout(PageLayout.ROW);
+        }
 
     }
 
@@ -123,6 +167,7 @@ public class ETLService {
             } else if (StringUtils.hasText(sourceTable.getName())) {
                 sourceTable.setColumns(sourceServer.columnsOf(sourceTable));
                 config.setQuery(sourceServer.select(sourceTable));
+                config.setPlainTable(true);
             } else {
                 throw new IllegalArgumentException("table/query not found");
             }
@@ -136,6 +181,7 @@ public class ETLService {
         else if (StringUtils.hasText(sourceTable.getName())) {
             replaceNoTypeColumns(sourceServer.columnsOf(sourceTable), sourceTable.getColumns());
             config.setQuery(sourceServer.select(sourceTable));
+            config.setPlainTable(true);
         }
     }
 
@@ -215,8 +261,15 @@ public class ETLService {
                 log.warn("[Clean] Can't close resource: {}", pool);
             }
         });
-        task.getConfig().getSourceServer().disconnect();
-        task.getConfig().getDestServer().disconnect();
+        task.getResources().forEach(resource -> {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("[Clean] Can't close resource: {}, {}", resource, e.getMessage());
+            }
+        });
+        RdbmsServerRegistry.release(task.getConfig().getSourceServer());
+        RdbmsServerRegistry.release(task.getConfig().getDestServer());
         task.getStatus().setEnd(new Date());
     }
 
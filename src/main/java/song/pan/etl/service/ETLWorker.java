@@ -1,25 +1,40 @@
 package song.pan.etl.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.AbstractSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.util.StringUtils;
 import song.pan.etl.common.exception.*;
 import song.pan.etl.common.exception.IllegalArgumentException;
 import song.pan.etl.common.util.ConcurrentUtils;
 import song.pan.etl.config.AppSetting;
+import song.pan.etl.rdbms.ColumnCodec;
+import song.pan.etl.rdbms.DataType;
 import song.pan.etl.rdbms.RdbmsServer;
 import song.pan.etl.rdbms.element.*;
 import song.pan.etl.service.domain.*;
+import song.pan.etl.service.range.RangeSplitter;
+import song.pan.etl.service.range.RangeSplitters;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -36,6 +51,44 @@ public class ETLWorker {
     private RdbmsServer destServer;
     private Table sourceTable;
     private Table destTable;
+    private PageReader pageReader;
+    private ChannelConnections destConnections;
+    private BulkLoadOptions bulkLoadOptions;
+    private LoadStage loadStage;
+    private ChunkSizeController chunkSizeController;
+    private volatile boolean bulkLoadUnsupported;
+
+    /**
+     * Precompiled codecs of the destination columns, in the same order
+     */
+    private ColumnCodec[] codecs;
+
+    /**
+     * Precompiled readers of the source columns, by name
+     */
+    private Map<String, ColumnCodec.Reader> readers;
+
+    /**
+     * Min and max of the major pagination key, found while the workload is counted
+     * if the source server builds no histogram
+     */
+    private CompletableFuture<Object[]> majorKeyBoundary;
+
+    /**
+     * Startup steps running side by side: the target table DDL,
+     * the workload estimate and the boundary scan of the major key
+     */
+    private static final int PREPARATION_STEPS = 3;
+
+    /**
+     * Startup steps of the source and the destination run side by side on it
+     */
+    private ThreadPoolExecutor preparation;
+
+    /**
+     * Target table created and its scripts done, pages are extracted meanwhile but loaded after
+     */
+    private CompletableFuture<Void> targetTableReady = CompletableFuture.completedFuture(null);
 
 
     public ETLWorker(ETLTask task) {
@@ -46,17 +99,79 @@ public class ETLWorker {
         this.destServer = task.getConfig().getDestServer();
         this.sourceTable = task.getConfig().getSourceTable();
         this.destTable = task.getConfig().getDestTable();
+        compileCodecs();
+    }
+
+
+    /**
+     * Pair every destination column with its source column type,
+     * so that the values are read and bound without type checks or name lookups
+     */
+    void compileCodecs() {
+        readers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Map<String, DataType<?>> sourceTypes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Column column : sourceTable.getColumns()) {
+            DataType<?> type = sourceServer.typeOf(column.getType());
+            sourceTypes.put(column.getName(), type);
+            readers.put(column.getName(), ColumnCodec.readerOf(ColumnCodec.Kind.of(type)));
+        }
+        List<Column> destColumns = destTable.getColumns();
+        codecs = new ColumnCodec[destColumns.size()];
+        for (int i = 0; i < codecs.length; i++) {
+            Column column = destColumns.get(i);
+            codecs[i] = ColumnCodec.of(sourceTypes.get(column.getName()), destServer.typeOf(column.getType()), column.getTypeIndex());
+        }
+        log.info("[ETL] Column codecs: {}", Arrays.toString(codecs));
+    }
+
+
+    /**
+     * Connections, thread pools and chunk sizes of the extract and load channels,
+     * set up when the task runs and released with the resources of the task
+     */
+    void prepareChannels() {
+        ChannelConnections sourceConnections = new ChannelConnections(sourceServer.getDataSource());
+        task.getResources().add(sourceConnections);
+        this.pageReader = new PageReader(sourceServer, config.getPageLayout(), readers, sourceConnections);
+
+        // each load channel commits its own pages
+        this.destConnections = new ChannelConnections(BatchInsertStrategy.BULK == config.getBatchInsertStrategy()
+                ? destServer.getBulkLoadDataSource() : destServer.getDataSource(), false);
+        this.bulkLoadOptions = new BulkLoadOptions();
+        bulkLoadOptions.setBatchSize(config.getBulkLoadBatchSize());
+        bulkLoadOptions.setTableLock(config.isBulkLoadTableLock());
+
+        // a page is held by the extraction and then by the load stage
+        this.chunkSizeController = new ChunkSizeController(config.isAdaptiveChunkSize(),
+                config.getExtractChunkSize(), config.getLoadChunkSize(), config.getTargetPageTimeMs(),
+                config.getMemoryBudgetMb() * 1024 * 1024 / Math.max(1, 2L * config.getMaxPagesInFlight()), status);
+        this.loadStage = newLoadStage();
+        task.getResources().add(destConnections);
     }
 
 
     public void doEtl() {
+        prepareChannels();
         preEtl();
-        etl();
+        try {
+            etl();
+        } finally {
+            // settled before the tables are cleaned up or post processed,
+            // a failed creation is the cause to report as the loads failed for it
+            ConcurrentUtils.join(targetTableReady);
+        }
         postEtl();
     }
 
 
+    /**
+     * Scripts run in order before anything else, as they may prepare either side.
+     * The target table is checked at once, a conflict fails before any source work,
+     * then the DDL runs in the background while {@link #etl()} counts and finds keys and boundaries,
+     * each of them on its own preparation thread.
+     */
     void preEtl() {
+        preparation = newThreadPool(PREPARATION_STEPS);
 
         // pre-scripts in source server
         config.getSourceServerPostScripts().forEach(s -> sourceServer.execute(s));
@@ -65,21 +180,31 @@ public class ETLWorker {
         // post-scripts in destination server
         config.getDestServerPreScripts().forEach(s -> destServer.execute(s));
 
-        createTargetTable();
+        Runnable createTargetTable = createTargetTable();
+
+        targetTableReady = CompletableFuture.runAsync(() -> {
+            createTargetTable.run();
 
-        // post-scripts in destination server after table creation
-        config.getTargetTablePostScripts().forEach(s -> destServer.execute(s));
+            // post-scripts in destination server after table creation
+            config.getTargetTablePostScripts().forEach(s -> destServer.execute(s));
+        }, preparation);
     }
 
 
-    void createTargetTable() {
+    /**
+     * Check the target table against the conflict strategy
+     * @return DDL creating the target table or its substitute
+     * @throws TableConflictException if exists and the strategy is exit
+     */
+    Runnable createTargetTable() {
 
         // create a new table if not exist
         if (!destServer.isTableExist(destTable)) {
-            destServer.createTable(destTable);
-            config.setDropTargetTable(true);
-            log.info("[PreETL] {}", destServer.fullQualifiedNameOf(destTable));
-            return;
+            return () -> {
+                destServer.createTable(destTable);
+                config.setDropTargetTable(true);
+                log.info("[PreETL] {}", destServer.fullQualifiedNameOf(destTable));
+            };
         }
 
         // conflict
@@ -92,29 +217,63 @@ public class ETLWorker {
             case CONTINUE:
                 String substituteTableName = destTable.getName() + AppSetting.SUBSTITUTE_SUFFIX;
                 Table substituteTable = new Table(destTable.getCatalog(), destTable.getSchema(), substituteTableName);
-                if (destServer.isTableExist(substituteTable)) {
-                    log.info("[PreETL] Table {} exists, drop it", destServer.fullQualifiedNameOf(substituteTable));
-                    destServer.dropTable(substituteTable);
-                }
-                substituteTable.setColumns(new LinkedList<>(destTable.getColumns()));
-                destServer.createTable(substituteTable);
-                log.info("[PreETL] Table {} created", destServer.fullQualifiedNameOf(substituteTable));
-                config.setSubstituteTable(substituteTable);
-                break;
+                return () -> {
+                    if (destServer.isTableExist(substituteTable)) {
+                        log.info("[PreETL] Table {} exists, drop it", destServer.fullQualifiedNameOf(substituteTable));
+                        destServer.dropTable(substituteTable);
+                    }
+                    substituteTable.setColumns(new LinkedList<>(destTable.getColumns()));
+                    destServer.createTable(substituteTable);
+                    log.info("[PreETL] Table {} created", destServer.fullQualifiedNameOf(substituteTable));
+                    config.setSubstituteTable(substituteTable);
+                };
             case EXIT:
                 throw new TableConflictException("Table already exists: " + destServer.fullQualifiedNameOf(destTable));
             default:
+                return () -> {
+                };
         }
     }
 
     void etl() {
 
-        if (totalWorkload() <= config.getExtractChunkSize()) {
-            nonPaging();
-            return;
+        // the pagination key and its boundaries are found while the workload is counted
+        if (null == preparation) {
+            preparation = newThreadPool(PREPARATION_STEPS);
+        }
+        CompletableFuture<Long> workload = CompletableFuture.supplyAsync(this::totalWorkload, preparation);
+        NoPaginationKeyException noPaginationKey = null;
+        try {
+            setPaginationKey();
+            List<String> keys = config.getPaginationKeys();
+            if (PaginationStrategy.DISTRIBUTE == config.getPaginationStrategy() && !sourceServer.isQuantilesSupported()
+                    && isSplittableKey(keys)) {
+                majorKeyBoundary = CompletableFuture.supplyAsync(() -> boundaryOf(keys.get(0)), preparation);
+            }
+        } catch (NoPaginationKeyException e) {
+            // small results need no pagination key
+            noPaginationKey = e;
         }
 
-        setPaginationKey();
+        if (ConcurrentUtils.join(workload) <= config.getExtractChunkSize()) {
+            // statistics may be stale, stream in pages instead of reading all at once
+            if (status.isEstimated()) {
+                cursor();
+            } else {
+                nonPaging();
+            }
+            return;
+        }
+        if (null != noPaginationKey) {
+            throw noPaginationKey;
+        }
+        if (status.isEstimated() && mayMissNullKeys()) {
+            // rows of null keys fall out of every keyset page, only a count tells if they are loaded
+            log.info("[ETL] Pagination keys {} may be null, count workload instead", config.getPaginationKeys());
+            status.setEstimated(false);
+            status.setExpect(sourceServer.count(config.getQuery()));
+            log.info("[ETL] Workload: {}", status.getExpect());
+        }
 
 
         PaginationStrategy strategy = config.getPaginationStrategy();
@@ -130,9 +289,15 @@ public class ETLWorker {
             case DISTRIBUTE:
                 distribute();
                 break;
+            case PRESCAN:
+                prescan();
+                break;
             case OFFSET_LIMIT:
                 offsetLimit();
                 break;
+            case HASH:
+                hash();
+                break;
             default:
                 cursor();
         }
@@ -142,6 +307,15 @@ public class ETLWorker {
 
 
     long totalWorkload() {
+        if (WorkloadEstimation.STATISTICS == config.getWorkloadEstimation()) {
+            long estimated = estimateWorkload();
+            if (estimated >= 0) {
+                status.setExpect(estimated);
+                status.setEstimated(true);
+                log.info("[ETL] Workload estimated by statistics: {}", estimated);
+                return estimated;
+            }
+        }
         log.info("[ETL] Count workload...");
         long workload = sourceServer.count(config.getQuery());
         status.setExpect(workload);
@@ -150,13 +324,38 @@ public class ETLWorker {
     }
 
 
+    /**
+     * @return row count of the source table from statistics,
+     * -1 if the query is not the plain table or no statistics available
+     */
+    private long estimateWorkload() {
+        if (!config.isPlainTable()) {
+            log.info("[ETL] Query is not a plain table, count workload instead");
+            return -1;
+        }
+        try {
+            return sourceServer.estimateRowCount(sourceTable);
+        } catch (DataAccessException e) {
+            log.info("[ETL] Statistics not available, count workload instead: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+
     void setPaginationKey() {
         PaginationStrategy strategy = config.getPaginationStrategy();
 
-        // these three strategies do not need  pagination key
+        // these strategies do not need pagination key
         if (strategy == PaginationStrategy.CURSOR
-                || strategy == PaginationStrategy.GENERATE
-                || strategy == PaginationStrategy.OFFSET_LIMIT) {
+                || strategy == PaginationStrategy.HASH) {
+            return;
+        }
+
+        // offset limit and generate work without key, but page faster with an unique one
+        if (strategy == PaginationStrategy.OFFSET_LIMIT || strategy == PaginationStrategy.GENERATE) {
+            if (config.getPaginationKeys().isEmpty()) {
+                findPaginationKey();
+            }
             return;
         }
 
@@ -165,19 +364,60 @@ public class ETLWorker {
             findPaginationKey();
         }
 
-        // use cursor if find no pagination key
+        // use hash partitions if find no pagination key, cursor if only one channel
         if (config.getPaginationKeys().isEmpty()) {
             if (strategy != null) {
                 throw new NoPaginationKeyException("No candidate pagination key found for strategy: " + strategy);
             }
-            config.setPaginationStrategy(PaginationStrategy.CURSOR);
+            config.setPaginationStrategy(config.getExtractChannel() > 1 ? PaginationStrategy.HASH : PaginationStrategy.CURSOR);
             return;
         }
 
-        // use distribute as default if not specified
+        // use distribute as default if not specified, prescan if the key can not be split by arithmetic
         if (strategy == null) {
-            config.setPaginationStrategy(PaginationStrategy.DISTRIBUTE);
+            config.setPaginationStrategy(isSplittableKey(config.getPaginationKeys())
+                    ? PaginationStrategy.DISTRIBUTE : PaginationStrategy.PRESCAN);
+        }
+    }
+
+
+    /**
+     * Unique indexes may hold null keys, which are never equal in a join,
+     * the keys are not null if all the columns say so or they are the primary key
+     */
+    private boolean isNotNullKey(List<String> paginationKeys) {
+        boolean notNull = paginationKeys.stream().allMatch(k -> sourceTable.getColumns().stream()
+                .anyMatch(c -> c.getName().equalsIgnoreCase(k) && Boolean.FALSE.equals(c.getNullable())));
+        if (notNull || !StringUtils.hasText(sourceTable.getName())) {
+            return notNull;
+        }
+        List<String> primaryKeys = sourceServer.primaryKeyOf(sourceTable);
+        return primaryKeys.size() == paginationKeys.size()
+                && primaryKeys.stream().allMatch(p -> paginationKeys.stream().anyMatch(p::equalsIgnoreCase));
+    }
+
+
+    /**
+     * Keyset conditions are never true for null keys, distribute loads them in a page of their own,
+     * the other keyset strategies skip them
+     */
+    private boolean mayMissNullKeys() {
+        PaginationStrategy strategy = config.getPaginationStrategy();
+        List<String> keys = config.getPaginationKeys();
+        boolean keyset = strategy == PaginationStrategy.DEPENDENT || strategy == PaginationStrategy.PRESCAN
+                || strategy == PaginationStrategy.DISTRIBUTE && !isSplittableKey(keys)
+                || strategy == PaginationStrategy.OFFSET_LIMIT && config.isUniquePaginationKey();
+        return keyset && !keys.isEmpty() && !isNotNullKey(keys);
+    }
+
+
+    private boolean isSplittableKey(List<String> paginationKeys) {
+        if (paginationKeys.size() != 1) {
+            return false;
         }
+        return sourceTable.getColumns().stream()
+                .filter(c -> c.getName().equalsIgnoreCase(paginationKeys.get(0)))
+                .anyMatch(c -> null != RangeSplitters.of(sourceServer.typeOf(c.getType())));
     }
 
 
@@ -194,9 +434,10 @@ public class ETLWorker {
 
             // find primary key
             List<String> primaryKeys = sourceServer.primaryKeyOf(sourceTable);
-            if (primaryKeys.isEmpty()) {
+            if (!primaryKeys.isEmpty()) {
                 log.info("[ETL] Found primary key: {}", primaryKeys);
                 paginationKeys = primaryKeys;
+                config.setUniquePaginationKey(true);
             }
             // find index
             else {
@@ -207,6 +448,7 @@ public class ETLWorker {
                 Optional<Index> unique = indices.stream().filter(Index::isUnique).findAny();
                 if (unique.isPresent()) {
                     paginationKeys = unique.get().getColumns();
+                    config.setUniquePaginationKey(true);
                     log.info("[ETL] Found unique index: {}", paginationKeys);
                 } else {
                     paginationKeys = indices.get(0).getColumns();
@@ -226,11 +468,15 @@ public class ETLWorker {
     }
 
 
+    /**
+     * Generate an auto-increased id for each row of the query results as pagination key.
+     * With an unique pagination key of no null values only the keys are copied to a narrow replica table,
+     * and each page joins its range of ids back to the query by the keys,
+     * otherwise the whole query results are copied.
+     */
     void generate() {
-        ThreadPoolExecutor threadPool = newThreadPool();
-
-        long pageNumber = estimatePageNumber(status.getExpect(), config.getExtractChunkSize());
-        log.info("[ETL] Page number: {}", pageNumber);
+        List<String> paginationKeys = config.getPaginationKeys();
+        boolean narrow = !paginationKeys.isEmpty() && config.isUniquePaginationKey() && isNotNullKey(paginationKeys);
 
         // create replica table
         String replica = !StringUtils.hasText(sourceTable.getName()) ? AppSetting.REPLICA_PREFIX + System.currentTimeMillis() :
@@ -238,36 +484,57 @@ public class ETLWorker {
         if (!StringUtils.hasText(config.getReplicaDatabase())) {
             config.setReplicaDatabase(sourceTable.getCatalog());
         }
-        Table replicaTable = new Table(config.getReplicaDatabase(), replica, new LinkedList<>(sourceServer.columnsOf(config.getQuery())));
+        List<Column> replicaColumns = narrow
+                ? sourceTable.getColumns().stream().filter(c -> paginationKeys.stream().anyMatch(k -> k.equalsIgnoreCase(c.getName())))
+                .collect(Collectors.toList())
+                : sourceServer.columnsOf(config.getQuery());
+        Table replicaTable = new Table(config.getReplicaDatabase(), replica, new LinkedList<>(replicaColumns));
+        log.info("[ETL] Replica {} with {} columns, keys only: {}", replica, replicaColumns.size(), narrow);
         sourceServer.copyToGenerateId(config.getQuery(), replicaTable, AppSetting.GENERATE_ID);
         Column id = new Column(AppSetting.GENERATE_ID);
         replicaTable.getColumns().add(id);
         config.setReplicaTable(replicaTable);
 
+        // ids are 1 to the rows of the replica, which are counted if the workload is estimated
+        long rows = !status.isEstimated() ? status.getExpect()
+                : sourceServer.count("SELECT " + AppSetting.GENERATE_ID + " FROM " + sourceServer.fullQualifiedNameOf(replicaTable));
+        long pageNumber = estimatePageNumber(rows, config.getExtractChunkSize());
+        log.info("[ETL] Page number: {}", pageNumber);
+
         String selectAll = sourceServer.select(replicaTable);
-        List<Future> futures = new LinkedList<>();
+        List<String> keys = Collections.singletonList(AppSetting.GENERATE_ID);
+        // generated ids are 1 to expect, every range is bounded and can be split
+        List<RangeScheduler.Range> ranges = new ArrayList<>();
         for (long pageIndex = 1; pageIndex <= pageNumber; pageIndex++) {
-            long start = (pageIndex - 1) * config.getExtractChunkSize() + 1;
-            long end = pageIndex * config.getExtractChunkSize();
-            Page page = new Page(pageIndex);
-            futures.add(threadPool.submit(() -> {
-                long begin = System.currentTimeMillis();
-                page.setData(sourceServer.query(selectAll, id, start, end));
-                page.setExtractTimeMs(System.currentTimeMillis() - begin);
-                getLoader().load(page);
-            }));
+            ranges.add(new RangeScheduler.Range((pageIndex - 1) * config.getExtractChunkSize(), pageIndex * config.getExtractChunkSize()));
         }
-
-        ConcurrentUtils.wait(futures);
+        new RangeScheduler(newThreadPool(), RangeSplitters.of(ColumnCodec.Kind.LONG), chunkSizeController::extractChunkSize)
+                .run(ranges, (pageIndex, range) -> {
+                    Page page = new Page(pageIndex);
+                    PreparedQuery select = narrow
+                            ? sourceServer.selectByKeys(config.getQuery(), replicaTable, paginationKeys, AppSetting.GENERATE_ID,
+                            ((Number) range.after).longValue(), ((Number) range.upTo).longValue())
+                            : sourceServer.selectRange(selectAll, keys, boundOf(range.after), boundOf(range.upTo));
+                    pageReader.read(page, select);
+                    return getLoader().load(page);
+                });
 
         checkLoadedRows();
     }
 
 
+    /**
+     * @return a pool of extract channels
+     */
     ThreadPoolExecutor newThreadPool() {
+        return newThreadPool(config.getExtractChannel());
+    }
+
+
+    ThreadPoolExecutor newThreadPool(int channel) {
         ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
-                task.getConfig().getChannel(),
-                task.getConfig().getChannel(),
+                channel,
+                channel,
                 0,
                 TimeUnit.MILLISECONDS,
                 new LinkedBlockingDeque<>());
@@ -276,6 +543,27 @@ public class ETLWorker {
     }
 
 
+    /**
+     * The load stage takes as many batches as {@link ETLConfig#getMaxPagesInFlight()} pages hold
+     */
+    LoadStage newLoadStage() {
+        long batchesPerPage = estimatePageNumber(config.getExtractChunkSize(), config.getLoadChunkSize());
+        int size = (int) Math.min(Integer.MAX_VALUE, config.getMaxPagesInFlight() * Math.max(batchesPerPage, 1));
+        return new LoadStage(newThreadPool(config.getLoadChannel()), size, chunkSizeController::loadChunkSize,
+                this::loadBatch, this::pageLoaded);
+    }
+
+
+    /**
+     * Pages are submitted through a bounded window, at most
+     * {@link ETLConfig#getMaxPagesInFlight()} pages are held in memory
+     * at the same time no matter how big the query results are.
+     */
+    PageWindow newPageWindow() {
+        return new PageWindow(newThreadPool(), config.getMaxPagesInFlight());
+    }
+
+
     long estimatePageNumber(long total, long pageSize) {
         return (total % pageSize == 0) ? total / pageSize : (total / pageSize + 1);
     }
@@ -287,54 +575,80 @@ public class ETLWorker {
     }
 
 
+    /**
+     * Hand the page over to the load stage, the page is loaded asynchronously
+     * and the loaded rows are counted once all of its batches loaded
+     */
     protected Loader getLoader() {
         return (page) -> {
-            List<Row> rows = page.getData();
+            chunkSizeController.extracted(page.size(), page.getExtractTimeMs(), estimatePageRowBytes(page));
+            status.addExtracted(page.size());
+            loadStage.submit(page);
+            return page.size();
+        };
+    }
 
-            Table to = Optional.ofNullable(config.getSubstituteTable()).orElse(destTable);
 
-            long cnt = 0;
+    /**
+     * Load one batch of a page, on a load channel
+     */
+    long loadBatch(Page batch) {
+        ConcurrentUtils.join(targetTableReady);
+        Table to = Optional.ofNullable(config.getSubstituteTable()).orElse(destTable);
+        try {
             long begin = System.currentTimeMillis();
-            try {
-                long chunkSize = config.getLoadChunkSize();
-                // split to multiple small pages
-                if (rows.size() > chunkSize) {
-                    for (long i = 0; i < rows.size(); i++) {
-                        long end = Math.min(i + chunkSize, rows.size());
-                        Page childPage = new Page(rows.subList((int) i, (int) end));
-                        long loadRows = loadPage(destServer, to, childPage);
-                        cnt += loadRows;
-                        i = end;
-                    }
-                } else {
-                    cnt = loadPage(destServer, to, page);
-                }
-            } catch (Exception e) {
-                status.getErrors().add(e);
-                throw new SystemException(e);
-            }
-            page.setLoadTimeMs(System.currentTimeMillis() - begin);
+            long rows = loadPage(destServer, to, batch);
+            chunkSizeController.loaded(rows, System.currentTimeMillis() - begin);
+            return rows;
+        } catch (Exception e) {
+            status.getErrors().add(e);
+            throw new SystemException(e);
+        }
+    }
 
-            synchronized (ETLWorker.class) {
-                long total = status.getCurrent() + cnt;
-                if (total == status.getExpect()) {
-                    status.setSuccess(Boolean.TRUE);
-                }
-                status.setCurrent(total);
+
+    void pageLoaded(Page page, long cnt) {
+        synchronized (ETLWorker.class) {
+            long total = status.getCurrent() + cnt;
+            if (!status.isEstimated() && total == status.getExpect()) {
+                status.setSuccess(Boolean.TRUE);
             }
+            status.setCurrent(total);
+        }
+        status.recordPage(cnt);
+
+        log.info("[ETL] Page {} [{}%], current: {}, extract:{} ms, load: {}ms",
+                page.getIndex(),
+                String.format("%.2f", status.getCurrent() * 100.00 / status.getExpect()),
+                status.getCurrent(),
+                page.getExtractTimeMs(),
+                page.getLoadTimeMs());
+    }
 
-            log.info("[ETL] Page {} [{}%], current: {}, extract:{} ms, load: {}ms",
-                    page.getIndex(),
-                    String.format("%.2f", status.getCurrent() * 100.00 / status.getExpect()),
-                    status.getCurrent(),
-                    page.getExtractTimeMs(),
-                    page.getLoadTimeMs());
-            return cnt;
-        };
+
+    /**
+     * Wait for the load stage to drain all the pages handed over
+     */
+    void awaitLoaded() {
+        loadStage.await();
     }
 
 
+    /**
+     * Compare the loaded rows with the counted workload,
+     * or with the extracted rows if the workload is estimated,
+     * the pages are planned to cover all the rows, null keys included
+     */
     void checkLoadedRows() {
+        awaitLoaded();
+        if (status.isEstimated()) {
+            log.info("[ETL] Workload estimated: {}, extracted: {}", status.getExpect(), status.getExtracted());
+            status.setExpect(status.getExtracted());
+            status.setEstimated(false);
+            if (status.getExpect() == status.getCurrent()) {
+                status.setSuccess(Boolean.TRUE);
+            }
+        }
         if (status.getExpect() != status.getCurrent()) {
             config.setClear(true);
             throw new IncorrectLoadRowException("Expect: " + status.getExpect() + ", loaded: " + status.getCurrent());
@@ -342,187 +656,321 @@ public class ETLWorker {
     }
 
 
+    /**
+     * Keyset pagination, each page starts after the key tuple of the last row of
+     * its previous page, i.e. (k1, k2, ...) > (last tuple), ordered by the keys.
+     * Each page is read once, the next page is extracted while the loaders take the current one.
+     * If the keys are not unique, the rows sharing the last key tuple of a page may continue
+     * in the next page, they are cut from the page and read at once by that key tuple.
+     */
     void dependent() {
         List<String> paginationKeys = config.getPaginationKeys();
+        boolean unique = config.isUniquePaginationKey();
+        log.info("[ETL] Keyset pagination keys: {}, unique: {}", paginationKeys, unique);
 
-        String majorKey = paginationKeys.get(0);
-        log.info("[ETL] Major pagination key: {}", majorKey);
-
-        Row lastRow = sourceServer.lastRowOf(config.getQuery(), paginationKeys);
-        log.info("[ETL] Last row: {}", lastRow);
-        Object endBoundary = lastRow.getColumn(majorKey);
-        log.info("[ETL] End boundary: {}", endBoundary);
-        assert null != endBoundary;
-
-        ThreadPoolExecutor threadPool = newThreadPool();
-        long chunkSize = config.getExtractChunkSize();
-        Object startBoundary = null;
+        PageWindow window = newPageWindow();
+        List<Object> lastKey = null;
         long pageIndex = 0;
-        List<Future> futures = new LinkedList<>();
-        boolean queryComplete = false;
-        while (!queryComplete) {
-            Object preStartBoundary = startBoundary;
-            String query = addBoundary(sourceServer, config.getQuery(), majorKey, startBoundary, endBoundary);
-            query = query + " ORDER BY " + String.join(",", paginationKeys);
-            long begin = System.currentTimeMillis();
-            List<Row> rows = sourceServer.topRowsOf(query, chunkSize);
-            Page page = new Page(++pageIndex, rows);
-            page.setExtractTimeMs(System.currentTimeMillis() - begin);
-
-            // refresh start boundary
-            startBoundary = rows.get(rows.size() - 1).getColumn(majorKey);
-
-            // end boundary not reach yet,
-            // remove all the rows having the end boundary
-            if (!Objects.equals(lastRow.getColumn(majorKey), startBoundary)) {
-                Object sb = startBoundary;
-                List<Row> copy = rows.stream().filter(row -> !Objects.equals(row.getColumn(majorKey), sb)).collect(Collectors.toList());
-                if (copy.isEmpty()) {
-                    log.info("[ETL] Page[{}] has a same pagination key: {}={}, current size: {}, will double it to query again ",
-                            page.getIndex(), majorKey, startBoundary, chunkSize);
-                    startBoundary = preStartBoundary;
-                    chunkSize = chunkSize * 2;
-                    pageIndex--;
-                    continue;
-                }
-                page.setData(copy);
+        while (true) {
+            long chunkSize = chunkSizeController.extractChunkSize();
+            Page page = new Page(++pageIndex);
+            pageReader.read(page, sourceServer.selectAfter(config.getQuery(), paginationKeys, lastKey, chunkSize));
+            int size = page.size();
+            if (size == 0) {
+                break;
             }
-            // end boundary reached
-            else {
-                log.info("[ETL] Found max value of [{}], current page: [{}, {}], last row: {}",
-                        majorKey, preStartBoundary, startBoundary, lastRow);
-                boolean reachEnd = false;
-                int lastRowIndex = 0;
-                for (int i = 0; i < rows.size(); i++) {
-                    boolean allColumnMatch = true;
-                    for (Map.Entry<String, Object> entry : lastRow.entrySet()) {
-                        if (!Objects.equals(entry.getValue(), rows.get(i).getColumn(entry.getKey()))) {
-                            allColumnMatch = false;
-                            break;
-                        }
-                    }
-                    if (allColumnMatch) {
-                        reachEnd = true;
-                        lastRowIndex = i;
-                    }
+
+            int[] keyOrdinals = page.getSchema().ordinalsOf(paginationKeys);
+            lastKey = keyOf(page, size - 1, keyOrdinals);
+            boolean queryComplete = size < chunkSize;
+
+            if (queryComplete || unique) {
+                window.submit(() -> getLoader().load(page));
+            } else {
+                // rows sharing the last key tuple
+                int from = size - 1;
+                while (from > 0 && lastKey.equals(keyOf(page, from - 1, keyOrdinals))) {
+                    from--;
                 }
-                if (reachEnd) {
-                    log.info("[ETL] Query complete");
-                    page.setData(rows.subList(0, lastRowIndex + 1));
-                    queryComplete = true;
+                if (from > 0) {
+                    Page head = page.slice(0, from);
+                    window.submit(() -> getLoader().load(head));
                 } else {
-                    log.info("[ETL] Max major key shows,{}={}, but has not reached the end, last row: {}, " +
-                            "will double page size to query again", majorKey, endBoundary, lastRow);
-                    startBoundary = preStartBoundary;
-                    chunkSize = chunkSize * 2;
                     pageIndex--;
-                    continue;
                 }
+                Page boundary = new Page(++pageIndex);
+                pageReader.read(boundary, sourceServer.selectEqual(config.getQuery(), paginationKeys, lastKey));
+                log.info("[ETL] Page {} has {} rows of boundary key: {}", boundary.getIndex(), boundary.size(), lastKey);
+                window.submit(() -> getLoader().load(boundary));
             }
-            Optional.ofNullable(page).ifPresent(p -> futures.add(threadPool.submit(() -> getLoader().load(p))));
 
-            // rollback extract chunk size
-            chunkSize = config.getExtractChunkSize();
+            if (queryComplete) {
+                break;
+            }
+            if (lastKey.contains(null)) {
+                throw new IllegalArgumentException("Pagination keys " + paginationKeys + " have null value, " +
+                        "page " + pageIndex + " can not be continued");
+            }
         }
+        log.info("[ETL] Query complete, pages: {}", pageIndex);
 
-        ConcurrentUtils.wait(futures);
+        window.await();
 
         checkLoadedRows();
     }
 
 
+    private static List<Object> keyOf(Page page, int row, int[] keyOrdinals) {
+        List<Object> key = new ArrayList<>(keyOrdinals.length);
+        for (int ordinal : keyOrdinals) {
+            key.add(page.valueOf(row, ordinal));
+        }
+        return key;
+    }
+
+
     /**
-     * Hard-coded, may not suit for every situation
+     * Read the pagination keys in order, which is likely an index-only scan, and keep
+     * every chunk-size-th key tuple as split point, ranges (previous split point, split point]
+     * hold one chunk each and do not depend on each other, so all of them are submitted at once.
      */
-    private String addBoundary(RdbmsServer server, String query, String key, Object start, Object end) {
-        String condition = "";
-        if (start != null) {
-            condition = key + " >= " + server.format(start);
-            if (end != null) {
-                condition = condition + " AND " + key + " <= " + server.format(end);
-            }
-        } else if (end != null) {
-            condition = key + " <= " + server.format(end);
+    void prescan() {
+        List<String> paginationKeys = config.getPaginationKeys();
+        long begin = System.currentTimeMillis();
+        List<List<Object>> splitPoints = scanSplitPoints(paginationKeys, config.getExtractChunkSize());
+        if (null == splitPoints) {
+            log.warn("[ETL] Pagination keys {} have null value, fall back to cursor", paginationKeys);
+            cursor();
+            return;
         }
+        log.info("[ETL] Prescan {} complete, split points: {}, cost: {} ms",
+                paginationKeys, splitPoints.size(), System.currentTimeMillis() - begin);
 
-        SQLResolver.Select select = SQLResolver.resolveSelect(query);
-        if (null != select.getWhereItem()) {
-            select.getWhereItem().getMembers().add(0, condition);
-        } else {
-            SQLResolver.Item where = new SQLResolver.Item(SQLResolver.ItemType.WHERE);
-            where.setMembers(Collections.singletonList(condition));
-            select.setWhereItem(where);
+        PageWindow window = newPageWindow();
+        List<Object> after = null;
+        long pageIndex = 0;
+        for (int i = 0; i <= splitPoints.size(); i++) {
+            List<Object> start = after;
+            List<Object> end = i < splitPoints.size() ? splitPoints.get(i) : null;
+            Page page = new Page(++pageIndex);
+            window.submit(() -> {
+                pageReader.read(page, sourceServer.selectRange(config.getQuery(), paginationKeys, start, end));
+                getLoader().load(page);
+            });
+            log.info("[ETL] Page {} : {} -> ({}, {}]", pageIndex, paginationKeys, start, end);
+            after = end;
         }
-        return select.toString();
+
+        window.await();
+
+        checkLoadedRows();
     }
 
 
-    void distribute() {
-        ThreadPoolExecutor threadPool = newThreadPool();
+    /**
+     * @param every number of rows between two split points
+     * @return the key tuple of every {@code every}-th row, the last row excluded,
+     * null if any key value is null, which can not be compared
+     */
+    List<List<Object>> scanSplitPoints(List<String> keys, long every) {
+        List<List<Object>> splitPoints = new ArrayList<>();
+        try (Connection connection = sourceServer.getDataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            sourceServer.enableStreaming(statement, (int) Math.min(every, Integer.MAX_VALUE));
+            try (ResultSet resultSet = statement.executeQuery(sourceServer.selectKeys(config.getQuery(), keys))) {
+                long rows = 0;
+                List<Object> key = null;
+                while (resultSet.next()) {
+                    key = new ArrayList<>(keys.size());
+                    for (int i = 1; i <= keys.size(); i++) {
+                        Object value = JdbcUtils.getResultSetValue(resultSet, i);
+                        if (null == value) {
+                            return null;
+                        }
+                        key.add(value);
+                    }
+                    // a key repeated over a whole range adds no split point
+                    if (++rows % every == 0
+                            && (splitPoints.isEmpty() || !key.equals(splitPoints.get(splitPoints.size() - 1)))) {
+                        splitPoints.add(key);
+                    }
+                }
+                // the last range is unbounded
+                if (!splitPoints.isEmpty() && splitPoints.get(splitPoints.size() - 1) == key) {
+                    splitPoints.remove(splitPoints.size() - 1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SystemException(e);
+        }
+        return splitPoints;
+    }
+
 
+    /**
+     * Split the query by the major pagination key, with an equi-depth histogram
+     * if the server can build one, each page holds about extract-chunk-size rows
+     * regardless of gaps in the key space. Otherwise split [min, max] into ranges
+     * of the same width by the {@link RangeSplitter} of the key type.
+     */
+    void distribute() {
         String majorKey = config.getPaginationKeys().get(0);
 
         Column majorColumn = sourceTable.getColumns().stream().filter(c -> c.getName().equals(majorKey)).findAny()
                 .orElseThrow(() -> new IllegalArgumentException("Pagination key [" + majorKey + "] not found in query results"));
 
+        long pageNumber = estimatePageNumber(status.getExpect(), config.getExtractChunkSize());
 
-        long min = Long.parseLong(sourceServer.minOf(config.getQuery(), majorKey).toString());
-        long max = Long.parseLong(sourceServer.maxOf(config.getQuery(), majorKey).toString());
+        List<Object> bounds = quantilesOf(majorKey, pageNumber);
+        if (null == bounds) {
+            RangeSplitter splitter = RangeSplitters.of(sourceServer.typeOf(majorColumn.getType()));
+            if (null == splitter) {
+                log.info("[ETL] Type {} of [{}] can not be split, use prescan instead", majorColumn.getType(), majorKey);
+                prescan();
+                return;
+            }
+            // scanned for min and max only if the histogram is not available
+            Object[] boundary = null == majorKeyBoundary ? boundaryOf(majorKey) : ConcurrentUtils.join(majorKeyBoundary);
+            Object min = boundary[0];
+            Object max = boundary[1];
+            log.info("[ETL] Find boundary of major key [{}], [{}, {}]", majorKey, min, max);
+            bounds = null == min ? Collections.emptyList() : splitter.split(min, max, pageNumber);
+            log.info("[ETL] Page number: {}, boundaries: {}", pageNumber, bounds.size());
+        }
 
-        log.info("[ETL] Find boundary of major key [{}], [{}, {}]", majorKey, min, max);
+        distributeByBounds(majorKey, bounds, RangeSplitters.of(sourceServer.typeOf(majorColumn.getType())));
 
-        long range = max - min + 1;
+        // no range holds null keys
+        if (!isNotNullKey(Collections.singletonList(majorKey))) {
+            Page page = new Page(0);
+            log.info("[ETL] Page 0 : {} is null", majorKey);
+            pageReader.read(page, "SELECT * FROM (" + config.getQuery() + ") t WHERE " + majorKey + " IS NULL");
+            getLoader().load(page);
+        }
 
-        long pageNumber = estimatePageNumber(status.getExpect(), config.getExtractChunkSize());
-        long step = Math.max(estimatePageNumber(range, pageNumber), 1);
-        log.info("[ETL] Page number: {}, step: {}", pageNumber, step);
+        log.info("[ETL] Pages: {}, rows per page: [{}, {}], skew: {}", status.getPages(),
+                status.getMinPageRows(), status.getMaxPageRows(), String.format("%.2f", status.getPageSkew()));
 
-        long start = min;
-        long end = min + step - 1;
-        long pageIndex = 0;
-        List<Future> futures = new LinkedList<>();
-        for (;;) {
-            Page page = new Page(++pageIndex);
-            long finalStart = start;
-            long finalEnd = end;
-            futures.add(threadPool.submit(() -> {
-                long b = System.currentTimeMillis();
-                page.setData(sourceServer.query(config.getQuery(), majorColumn, finalStart, finalEnd));
-                page.setExtractTimeMs(System.currentTimeMillis() - b);
-                getLoader().load(page);
-            }));
-            log.info("[ETL] Page {} : {} -> [{}, {}]", pageIndex, majorKey, start, end);
-            if (end == max) {
-                break;
-            }
-            start = end + 1;
-            end = Math.min(end + step, max);
+        checkLoadedRows();
+    }
+
+
+    /**
+     * @return {min, max} of the key in one aggregate
+     */
+    private Object[] boundaryOf(String key) {
+        return sourceServer.minMaxOf(config.getQuery(), Collections.singletonList(key)).get(0);
+    }
+
+
+    /**
+     * @return upper bounds of equi-depth buckets without duplicates, null if not available
+     */
+    private List<Object> quantilesOf(String key, long buckets) {
+        if (!sourceServer.isQuantilesSupported()) {
+            log.info("[ETL] Histogram not supported by {}", sourceServer.getType());
+            return null;
         }
+        long begin = System.currentTimeMillis();
+        List<Object> quantiles;
+        try {
+            quantiles = sourceServer.quantilesOf(config.getQuery(), key, (int) Math.min(buckets, Integer.MAX_VALUE), status.getExpect());
+        } catch (UnsupportedOperationException | DataAccessException e) {
+            log.info("[ETL] Histogram of [{}] not available: {}", key, e.getMessage());
+            return null;
+        }
+        // a value spanning several buckets closes only one of them
+        List<Object> bounds = quantiles.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        log.info("[ETL] Histogram of [{}], buckets: {}, distinct bounds: {}, cost: {} ms",
+                key, quantiles.size(), bounds.size(), System.currentTimeMillis() - begin);
+        // the last bound is the max value, the last range is unbounded instead
+        return bounds.isEmpty() ? bounds : bounds.subList(0, bounds.size() - 1);
+    }
 
-        ConcurrentUtils.wait(futures);
 
-        checkLoadedRows();
+    /**
+     * Run ranges (previous bound, bound] with work stealing, the first and last
+     * range are unbounded so that no row outside the bounds is missed
+     * @param bounds inner boundaries in ascending order
+     * @param splitter key math to split a straggler range, null if not available
+     */
+    private void distributeByBounds(String majorKey, List<Object> bounds, RangeSplitter splitter) {
+        List<String> keys = Collections.singletonList(majorKey);
+        new RangeScheduler(newThreadPool(), splitter, chunkSizeController::extractChunkSize).run(RangeScheduler.rangesOf(bounds), (pageIndex, range) -> {
+            Page page = new Page(pageIndex);
+            log.info("[ETL] Page {} : {} -> {}", pageIndex, majorKey, range);
+            pageReader.read(page, sourceServer.selectRange(config.getQuery(), keys, boundOf(range.after), boundOf(range.upTo)));
+            return getLoader().load(page);
+        });
     }
 
+
+    private static List<Object> boundOf(Object value) {
+        return null == value ? null : Collections.singletonList(value);
+    }
+
+    /**
+     * Pages by offset and limit. With an unique pagination key, each page is ordered by the key
+     * and continues from the last key of the nearest completed page before it, so only the pages
+     * in between are skipped by offset instead of all the rows before the page.
+     */
     void offsetLimit() {
         long pageNumber = estimatePageNumber(status.getExpect(), config.getExtractChunkSize());
         log.info("[ETL] Page number: {}", pageNumber);
 
-        ThreadPoolExecutor threadPool = newThreadPool();
+        List<String> keys = config.getPaginationKeys();
+        boolean keyed = !keys.isEmpty() && config.isUniquePaginationKey();
+        log.info("[ETL] Offset limit ordered by: {}", keyed ? keys : "none");
 
-        List<Future> futures = new LinkedList<>();
-        for (long pageIndex = 1; pageIndex <= pageNumber; pageIndex++) {
-            long offset = (pageIndex - 1) * config.getExtractChunkSize();
+        // servers without offset paging, e.g. sybase, page by keys or hash instead
+        try {
+            if (keyed) {
+                sourceServer.selectOffset(config.getQuery(), keys, null, 0, 1);
+            } else {
+                sourceServer.selectOffset(config.getQuery(), 0, 1);
+            }
+        } catch (UnsupportedOperationException e) {
+            log.info("[ETL] Offset paging not supported by {}, use {} instead", sourceServer.getType(), keyed ? "dependent" : "hash");
+            if (keyed) {
+                dependent();
+            } else {
+                hash();
+            }
+            return;
+        }
+
+        // last key of each completed page
+        ConcurrentSkipListMap<Long, List<Object>> lastKeys = new ConcurrentSkipListMap<>();
+        long chunkSize = config.getExtractChunkSize();
+
+        PageWindow window = newPageWindow();
+
+        // with an estimated workload, pages go on until one comes short
+        boolean estimated = status.isEstimated();
+        AtomicBoolean exhausted = new AtomicBoolean();
+        for (long pageIndex = 1; estimated ? !exhausted.get() : pageIndex <= pageNumber; pageIndex++) {
+            long index = pageIndex;
             Page page = new Page(pageIndex);
-            futures.add(threadPool.submit(() -> {
-                long begin = System.currentTimeMillis();
-                page.setData(sourceServer.query(config.getQuery(), offset, config.getExtractChunkSize()));
-                page.setExtractTimeMs(System.currentTimeMillis() - begin);
+            window.submit(() -> {
+                if (!keyed) {
+                    pageReader.read(page, sourceServer.selectOffset(config.getQuery(), (index - 1) * chunkSize, chunkSize));
+                } else {
+                    Map.Entry<Long, List<Object>> completed = lastKeys.lowerEntry(index);
+                    List<Object> after = null == completed ? null : completed.getValue();
+                    long skippedPages = index - 1 - (null == completed ? 0 : completed.getKey());
+                    pageReader.read(page, sourceServer.selectOffset(config.getQuery(), keys, after, skippedPages * chunkSize, chunkSize));
+                    if (page.size() > 0) {
+                        lastKeys.put(index, keyOf(page, page.size() - 1, page.getSchema().ordinalsOf(keys)));
+                    }
+                }
+                if (page.size() < chunkSize) {
+                    exhausted.set(true);
+                }
                 getLoader().load(page);
-            }));
+            });
         }
 
-        ConcurrentUtils.wait(futures);
+        window.await();
 
         checkLoadedRows();
     }
@@ -532,48 +980,109 @@ public class ETLWorker {
         long pageNumber = estimatePageNumber(status.getExpect(), config.getExtractChunkSize());
         log.info("[ETL] Page number: {}", pageNumber);
 
+        PageWindow window = newPageWindow();
+
+        // blocks while the window is full
+        stream(config.getQuery(), new AtomicLong(), page -> window.submit(() -> getLoader().load(page)));
+
+        window.await();
+
+        checkLoadedRows();
+    }
+
+
+    /**
+     * Split the query into channel disjoint partitions by the hash of the pagination keys,
+     * or of the whole row if no key specified, each partition is streamed on its own connection
+     * and loaded by the same channel. Needs no index, but each partition scans the whole query.
+     */
+    void hash() {
+        List<String> columns = hashColumns();
+        int partitions = Math.max(config.getExtractChannel(), 1);
+        if (columns.isEmpty() || partitions == 1) {
+            log.info("[ETL] No column to hash or only one channel, use cursor instead");
+            cursor();
+            return;
+        }
+        log.info("[ETL] Hash partitions: {}, columns: {}", partitions, columns);
+
         ThreadPoolExecutor threadPool = newThreadPool();
+        AtomicLong pageIndex = new AtomicLong();
+        List<Future> futures = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            String partition = sourceServer.selectPartition(config.getQuery(), columns, partitions, i);
+            futures.add(threadPool.submit(() -> stream(partition, pageIndex, page -> getLoader().load(page))));
+        }
+        ConcurrentUtils.wait(futures);
+
+        checkLoadedRows();
+    }
+
 
-        int pageIndex = 0;
-        List<Future> futures = new LinkedList<>();
+    /**
+     * Columns that can be hashed, large objects are excluded
+     */
+    private List<String> hashColumns() {
+        if (!config.getPaginationKeys().isEmpty()) {
+            return config.getPaginationKeys();
+        }
+        return sourceTable.getColumns().stream()
+                .filter(c -> {
+                    String type = String.valueOf(c.getType()).toUpperCase();
+                    return !type.contains("TEXT") && !type.contains("LOB") && !type.contains("IMAGE") && !type.contains("XML")
+                            && ColumnCodec.Kind.of(sourceServer.typeOf(c.getType())) != ColumnCodec.Kind.BYTES;
+                })
+                .map(Column::getName)
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Stream the query results on a dedicated connection, cut them into pages of extract chunk size
+     * @param sql query to stream
+     * @param pageIndex page index shared by the streams of one task
+     * @param sink takes each page
+     */
+    private void stream(String sql, AtomicLong pageIndex, Consumer<Page> sink) {
+        int chunkSize = (int) chunkSizeController.extractChunkSize();
         try (Connection connection = sourceServer.getDataSource().getConnection();
-             ResultSet resultSet = connection.createStatement().executeQuery(config.getQuery()))  {
-            resultSet.setFetchSize((int) config.getExtractChunkSize());
-            List<Row> rows = new LinkedList<>();
-            long begin = System.currentTimeMillis();
-            long rowNum = 0;
-            while (resultSet.next()) {
-                Row row = new Row();
-                for (Column column : sourceTable.getColumns()) {
-                    row.setColumn(column.getName(), resultSet.getObject(column.getName()));
+             Statement statement = connection.createStatement()) {
+            // fetch rows as the sink consumes them, instead of buffering the whole results in the driver
+            sourceServer.enableStreaming(statement, chunkSize);
+            try (ResultSet resultSet = statement.executeQuery(sql)) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                PageReader.PageBuffer buffer = pageReader.newBuffer(metaData, chunkSize);
+                long begin = System.currentTimeMillis();
+                while (resultSet.next()) {
+                    buffer.add(resultSet);
+                    if (buffer.size() == chunkSize) {
+                        Page page = new Page(pageIndex.incrementAndGet());
+                        buffer.fill(page);
+                        page.setExtractTimeMs(System.currentTimeMillis() - begin);
+                        sink.accept(page);
+                        begin = System.currentTimeMillis();
+                        chunkSize = (int) chunkSizeController.extractChunkSize();
+                        buffer = pageReader.newBuffer(metaData, chunkSize);
+                    }
                 }
-                rows.add(row);
-                rowNum++;
-                if (rows.size() == config.getExtractChunkSize() || rowNum == status.getExpect()) {
-                    Page page = new Page(rows);
-                    page.setIndex(++pageIndex);
+                if (buffer.size() > 0) {
+                    Page page = new Page(pageIndex.incrementAndGet());
+                    buffer.fill(page);
                     page.setExtractTimeMs(System.currentTimeMillis() - begin);
-                    futures.add(threadPool.submit(() -> getLoader().load(page)));
-                    begin = System.currentTimeMillis();
-                    rows = new LinkedList<>();
+                    sink.accept(page);
                 }
             }
         } catch (SQLException e) {
             throw new SystemException(e);
         }
-
-        ConcurrentUtils.wait(futures);
-
-        checkLoadedRows();
     }
 
 
     void nonPaging() {
-        long begin = System.currentTimeMillis();
-        List<Row> rows = sourceServer.query(config.getQuery());
-        Page page = new Page(1, rows);
-        page.setExtractTimeMs(System.currentTimeMillis() - begin);
+        Page page = new Page(1);
+        pageReader.read(page, config.getQuery());
         getLoader().load(page);
+        awaitLoaded();
     }
 
 
@@ -613,7 +1122,7 @@ public class ETLWorker {
 
 
     long loadPage(RdbmsServer server, Table to, Page page) {
-        if (null == page.getData() || page.getData().isEmpty()) {
+        if (page.size() == 0) {
             return 0;
         }
 
@@ -625,22 +1134,130 @@ public class ETLWorker {
                 return jdbcBatchInsert(server, to, page);
             case SPRING:
                 return springBatchInsert(server, to, page);
+            case VALUES:
+                return valuesInsert(server, to, page);
+            case BULK:
+                return bulkInsert(server, to, page);
             default:
                 throw new UnsupportedOperationException();
         }
     }
 
 
-    long springBatchInsert(RdbmsServer server, Table to, Page page) {
-        List<Row> rows = page.getData();
+    /**
+     * Rows carried by one multi-row insert statement at most,
+     * beyond it the gain of fewer round trips is negligible
+     */
+    private static final int MAX_VALUES_ROWS = 4096;
+
+    /**
+     * Number of rows sampled to estimate the row width of a page
+     */
+    private static final int ROW_WIDTH_SAMPLES = 64;
+
+
+    /**
+     * Insert with multi-row statements, the rows per statement are rounded down to
+     * a power of two, and the rest of the page is cut into descending powers of two,
+     * so the few statement shapes are prepared once per channel and reused by all the pages
+     */
+    long valuesInsert(RdbmsServer server, Table to, Page page) {
+        int[] ordinals = ordinalsOf(to.getColumns(), page.getSchema());
+        int maxRows = server.maxInsertRows(to, estimateRowBytes(ordinals, page));
+        if (maxRows <= 0) {
+            return jdbcBatchInsert(server, to, page);
+        }
+        int shape = Integer.highestOneBit(Math.min(maxRows, MAX_VALUES_ROWS));
+
+        try {
+            int row = 0;
+            while (row < page.size()) {
+                int rows = Math.min(shape, Integer.highestOneBit(page.size() - row));
+                PreparedStatement statement = destConnections.prepare(server.prepareInsertStatement(to, rows));
+                bindRows(ordinals, statement, page, row, row + rows);
+                statement.executeUpdate();
+                row += rows;
+            }
+            destConnections.connection().commit();
+            return row;
+        } catch (SQLException e) {
+            destConnections.invalidate();
+            throw new SystemException(e);
+        }
+    }
+
+
+    /**
+     * Load through the server's bulk load path with the connection pinned to current load channel,
+     * falls back to {@link #jdbcBatchInsert} if the server has none
+     */
+    long bulkInsert(RdbmsServer server, Table to, Page page) {
+        if (bulkLoadUnsupported) {
+            return jdbcBatchInsert(server, to, page);
+        }
+        int[] ordinals = ordinalsOf(to.getColumns(), page.getSchema());
+        try {
+            Connection connection = destConnections.connection();
+            long rows = server.bulkLoad(connection, destConnections::prepare, to, page.size(),
+                    (row, column) -> ordinals[column] < 0 ? null : page.valueOf(row, ordinals[column]), bulkLoadOptions);
+            connection.commit();
+            return rows;
+        } catch (UnsupportedOperationException e) {
+            log.info("[ETL] {}, use JDBC batch insert instead", e.getMessage());
+            bulkLoadUnsupported = true;
+            return jdbcBatchInsert(server, to, page);
+        } catch (SQLException e) {
+            destConnections.invalidate();
+            throw new SystemException(e);
+        }
+    }
 
-        Map<String, Object>[] data = new HashMap[rows.size()];
-        for (int i = 0; i < rows.size(); i++) {
-            Map<String, Object> map = new HashMap<>();
-            for (Map.Entry<String, Object> entry : rows.get(i).entrySet()) {
-                map.put(entry.getKey(), entry.getValue());
+
+    /**
+     * Estimate bytes one row of the page takes, of all its columns
+     */
+    static long estimatePageRowBytes(Page page) {
+        if (null == page.getSchema() || page.size() == 0) {
+            return 0;
+        }
+        int[] ordinals = new int[page.getSchema().size()];
+        Arrays.setAll(ordinals, i -> i);
+        return estimateRowBytes(ordinals, page);
+    }
+
+
+    /**
+     * Estimate bytes one row takes in a statement by the widest of the sampled rows,
+     * strings are counted as 4 bytes per char and binaries as escaped
+     */
+    static long estimateRowBytes(int[] ordinals, Page page) {
+        int step = Math.max(1, page.size() / ROW_WIDTH_SAMPLES);
+        long widest = 0;
+        for (int row = 0; row < page.size(); row += step) {
+            long bytes = 0;
+            for (int ordinal : ordinals) {
+                Object value = ordinal < 0 ? null : page.valueOf(row, ordinal);
+                if (null == value) {
+                    bytes += 4;
+                } else if (value instanceof String) {
+                    bytes += 4L * ((String) value).length() + 3;
+                } else if (value instanceof byte[]) {
+                    bytes += 2L * ((byte[]) value).length + 3;
+                } else {
+                    bytes += 32;
+                }
             }
-            data[i] = map;
+            widest = Math.max(widest, bytes);
+        }
+        return widest;
+    }
+
+
+    long springBatchInsert(RdbmsServer server, Table to, Page page) {
+        SqlParameterSource[] data = new SqlParameterSource[page.size()];
+        for (int i = 0; i < data.length; i++) {
+            Row row = null != page.getColumns() ? page.getColumns().rowAt(i) : page.getData().get(i);
+            data[i] = new RowParameterSource(row);
         }
 
         String stmt = server.prepareNamedInsertStatement(to);
@@ -650,35 +1267,110 @@ public class ETLWorker {
     }
 
 
+    /**
+     * Expose a row's values as named parameters without copying them to a map
+     */
+    static class RowParameterSource extends AbstractSqlParameterSource {
 
-    private void prepareStatement(List<Column> columns, PreparedStatement statement, List<Row> rows) throws SQLException {
-        for (Row row : rows) {
-            int parameterIndex = 1;
-            for (Column column : columns) {
-                Object value = row.getColumn(column.getName());
-                if (null == value) {
-                    statement.setNull(parameterIndex++, column.getTypeIndex());
-                } else {
-                    statement.setObject(parameterIndex++, value);
+        private final Row row;
+
+        RowParameterSource(Row row) {
+            this.row = row;
+        }
+
+        @Override
+        public boolean hasValue(String paramName) {
+            return row.getSchema().ordinalOf(paramName) >= 0;
+        }
+
+        @Override
+        public Object getValue(String paramName) {
+            int ordinal = row.getSchema().ordinalOf(paramName);
+            if (ordinal < 0) {
+                throw new java.lang.IllegalArgumentException("No value registered for key '" + paramName + "'");
+            }
+            return row.get(ordinal);
+        }
+    }
+
+
+
+    /**
+     * Bind rows to the statement, the columns are resolved
+     * to ordinals once per page rather than once per value
+     */
+    private void prepareStatement(List<Column> columns, PreparedStatement statement, Page page) throws SQLException {
+        int[] ordinals = ordinalsOf(columns, page.getSchema());
+
+        // columnar page, bind with typed setters
+        ColumnBatch batch = page.getColumns();
+        if (null != batch) {
+            for (int row = 0; row < batch.size(); row++) {
+                for (int i = 0; i < ordinals.length; i++) {
+                    if (ordinals[i] < 0) {
+                        statement.setNull(i + 1, codecs[i].getNullType());
+                    } else {
+                        batch.bind(statement, i + 1, ordinals[i], row, codecs[i].getNullType());
+                    }
                 }
+                statement.addBatch();
+            }
+            return;
+        }
+
+        for (Row row : page.getData()) {
+            for (int i = 0; i < ordinals.length; i++) {
+                codecs[i].write(statement, i + 1, ordinals[i] < 0 ? null : row.get(ordinals[i]));
             }
             statement.addBatch();
         }
     }
 
 
+    /**
+     * Bind rows of the page one after another to a multi-row statement
+     * @param from first row, inclusive
+     * @param to last row, exclusive
+     */
+    private void bindRows(int[] ordinals, PreparedStatement statement, Page page, int from, int to) throws SQLException {
+        ColumnBatch batch = page.getColumns();
+        int index = 1;
+        for (int row = from; row < to; row++) {
+            Row values = null == batch ? page.getData().get(row) : null;
+            for (int i = 0; i < ordinals.length; i++, index++) {
+                if (ordinals[i] < 0) {
+                    statement.setNull(index, codecs[i].getNullType());
+                } else if (null != batch) {
+                    batch.bind(statement, index, ordinals[i], row, codecs[i].getNullType());
+                } else {
+                    codecs[i].write(statement, index, values.get(ordinals[i]));
+                }
+            }
+        }
+    }
+
+
+    private int[] ordinalsOf(List<Column> columns, RowSchema schema) {
+        return schema.ordinalsOf(columns.stream().map(Column::getName).collect(Collectors.toList()));
+    }
 
+
+
+    /**
+     * Insert with the connection and statement pinned to current load channel,
+     * the statement is prepared once per task and reset between batches
+     */
     long jdbcBatchInsert(RdbmsServer server, Table to, Page page) {
-        List<Row> rows = page.getData();
-        try (Connection connection = server.getDataSource().getConnection();
-             PreparedStatement statement = connection.prepareStatement(server.prepareInsertStatement(to))) {
-            connection.setAutoCommit(false);
-            prepareStatement(to.getColumns(), statement, rows);
+        try {
+            PreparedStatement statement = destConnections.prepare(server.prepareInsertStatement(to));
+            statement.clearBatch();
+            prepareStatement(to.getColumns(), statement, page);
             int[] updatedRows = statement.executeBatch();
-            connection.commit();
-            connection.setAutoCommit(true);
+            destConnections.connection().commit();
             return updatedRows.length;
         } catch (SQLException e) {
+            // uncommitted rows are rolled back as the connection closes
+            destConnections.invalidate();
             throw new SystemException(e);
         }
     }
@@ -0,0 +1,91 @@
+package song.pan.etl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import song.pan.etl.service.domain.Page;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Loading stage of one task, runs on its own load channels apart from the extraction.
+ * Extractors hand the pages over and go on extracting, a page is cut into batches
+ * loaded in parallel, each load channel over its own destination connection.
+ * At most the window size of batches are handed over but not loaded,
+ * handing over blocks while the loaders fall behind.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+@Slf4j
+class LoadStage {
+
+    @FunctionalInterface
+    interface BatchLoader {
+        /**
+         * @return number of rows loaded
+         */
+        long load(Page batch);
+    }
+
+    @FunctionalInterface
+    interface PageListener {
+        void loaded(Page page, long rows);
+    }
+
+
+    private final PageWindow window;
+    private final LongSupplier batchSize;
+    private final BatchLoader loader;
+    private final PageListener listener;
+
+
+    /**
+     * @param threadPool load channels
+     * @param size max number of batches handed over but not loaded
+     * @param batchSize max rows of one batch, read for each page
+     * @param loader load one batch
+     * @param listener notified once all the batches of a page loaded
+     */
+    LoadStage(ThreadPoolExecutor threadPool, int size, LongSupplier batchSize, BatchLoader loader, PageListener listener) {
+        this.window = new PageWindow(threadPool, size);
+        this.batchSize = batchSize;
+        this.loader = loader;
+        this.listener = listener;
+    }
+
+
+    /**
+     * Hand over a page, block until the loaders take all of its batches
+     */
+    void submit(Page page) {
+        int batchSize = (int) Math.max(1, Math.min(this.batchSize.getAsLong(), Integer.MAX_VALUE));
+        int batches = Math.max(1, (page.size() + batchSize - 1) / batchSize);
+        AtomicInteger remaining = new AtomicInteger(batches);
+        AtomicLong rows = new AtomicLong();
+        AtomicLong begin = new AtomicLong();
+
+        for (int from = 0; from < Math.max(page.size(), 1); from += batchSize) {
+            Page batch = batches == 1 ? page : page.slice(from, Math.min(from + batchSize, page.size()));
+            window.submit(() -> {
+                begin.compareAndSet(0, System.currentTimeMillis());
+                rows.addAndGet(loader.load(batch));
+                if (remaining.decrementAndGet() == 0) {
+                    page.setLoadTimeMs(System.currentTimeMillis() - begin.get());
+                    listener.loaded(page, rows.get());
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Wait for all the handed over pages loaded
+     * @throws song.pan.etl.common.exception.GeneralException the first failure of the batches
+     */
+    void await() {
+        window.await();
+    }
+
+}
@@ -0,0 +1,191 @@
+package song.pan.etl.service;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import song.pan.etl.common.exception.SystemException;
+import song.pan.etl.rdbms.DataType;
+import song.pan.etl.rdbms.RdbmsServer;
+import song.pan.etl.rdbms.ColumnCodec;
+import song.pan.etl.rdbms.element.ColumnBatch;
+import song.pan.etl.rdbms.element.PreparedQuery;
+import song.pan.etl.rdbms.element.Row;
+import song.pan.etl.rdbms.element.RowSchema;
+import song.pan.etl.service.domain.Page;
+import song.pan.etl.service.domain.PageLayout;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read query results into {@link Page}s of the configured {@link PageLayout}
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class PageReader {
+
+    private final RdbmsServer server;
+    private final PageLayout layout;
+
+    /**
+     * Pinned connections and prepared statements of the channels
+     */
+    private final ChannelConnections connections;
+
+    /**
+     * Precompiled readers of the source columns, by column name
+     */
+    private final Map<String, ColumnCodec.Reader> readers;
+
+
+    PageReader(RdbmsServer server, PageLayout layout, Map<String, ColumnCodec.Reader> readers, ChannelConnections connections) {
+        this.server = server;
+        this.layout = layout;
+        this.readers = readers;
+        this.connections = connections;
+    }
+
+
+    /**
+     * Execute the query statement and fill the page with all its results
+     * @param page page to fill
+     * @param sql query statement of the page
+     */
+    void read(Page page, String sql) {
+        long begin = System.currentTimeMillis();
+        server.getJdbcTemplate().query(sql, (ResultSetExtractor<Void>) rs -> {
+            PageBuffer buffer = newBuffer(rs.getMetaData(), 16);
+            while (rs.next()) {
+                buffer.add(rs);
+            }
+            buffer.fill(page);
+            return null;
+        });
+        page.setExtractTimeMs(System.currentTimeMillis() - begin);
+    }
+
+
+    /**
+     * Execute the prepared statement of current channel with the parameters
+     * and fill the page with all its results
+     * @param page page to fill
+     * @param query query statement of the page
+     */
+    void read(Page page, PreparedQuery query) {
+        long begin = System.currentTimeMillis();
+        try {
+            PreparedStatement statement = connections.prepare(query.getSql());
+            query.bind(statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                PageBuffer buffer = newBuffer(rs.getMetaData(), 16);
+                while (rs.next()) {
+                    buffer.add(rs);
+                }
+                buffer.fill(page);
+            }
+        } catch (SQLException e) {
+            connections.invalidate();
+            throw new SystemException(e);
+        }
+        page.setExtractTimeMs(System.currentTimeMillis() - begin);
+    }
+
+
+    /**
+     * @param metaData meta data of the result set to read
+     * @param capacity expected number of rows
+     * @return an empty buffer collecting rows of the result set
+     */
+    PageBuffer newBuffer(ResultSetMetaData metaData, int capacity) throws SQLException {
+        if (layout == PageLayout.COLUMNAR) {
+            ColumnBatch batch = ColumnBatch.of(metaData, this::javaTypeOf, capacity);
+            return new PageBuffer() {
+                @Override
+                public void add(ResultSet rs) throws SQLException {
+                    batch.read(rs);
+                }
+
+                @Override
+                public int size() {
+                    return batch.size();
+                }
+
+                @Override
+                public void fill(Page page) {
+                    batch.seal();
+                    page.setColumns(batch);
+                }
+            };
+        }
+
+        RowSchema schema = RowSchema.of(metaData);
+        ColumnCodec.Reader[] columnReaders = readersOf(schema);
+        List<Row> rows = new ArrayList<>(capacity);
+        return new PageBuffer() {
+            @Override
+            public void add(ResultSet rs) throws SQLException {
+                Object[] values = new Object[columnReaders.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columnReaders[i].read(rs, i + 1);
+                }
+                rows.add(new Row(schema, values));
+            }
+
+            @Override
+            public int size() {
+                return rows.size();
+            }
+
+            @Override
+            public void fill(Page page) {
+                page.setData(rows);
+                page.setSchema(schema);
+            }
+        };
+    }
+
+
+    /**
+     * Resolve the reader of each column once per result set
+     */
+    private ColumnCodec.Reader[] readersOf(RowSchema schema) {
+        ColumnCodec.Reader[] result = new ColumnCodec.Reader[schema.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = readers.getOrDefault(schema.nameOf(i), DEFAULT_READER);
+        }
+        return result;
+    }
+
+
+    private static final ColumnCodec.Reader DEFAULT_READER = ColumnCodec.readerOf(ColumnCodec.Kind.OBJECT);
+
+
+    private Class<?> javaTypeOf(String typeName) {
+        DataType<?> dataType = server.typeOf(typeName);
+        return null == dataType ? null : dataType.getCls();
+    }
+
+
+    /**
+     * Rows of one page being read
+     */
+    interface PageBuffer {
+
+        /**
+         * Append the current row of the result set
+         */
+        void add(ResultSet rs) throws SQLException;
+
+        int size();
+
+        /**
+         * Move the rows to the page
+         */
+        void fill(Page page);
+    }
+
+}
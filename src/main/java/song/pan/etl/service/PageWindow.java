@@ -0,0 +1,96 @@
+package song.pan.etl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import song.pan.etl.common.exception.GeneralException;
+import song.pan.etl.common.exception.SystemException;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounds the number of pages in flight of one task.
+ * A page takes a permit when it is submitted and gives it back
+ * when it is loaded, so the producer blocks while loaders fall behind
+ * and the pages are enumerated only as fast as they are consumed.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+@Slf4j
+class PageWindow {
+
+    private final ThreadPoolExecutor threadPool;
+    private final Semaphore permits;
+    private final int size;
+    private final AtomicReference<Throwable> error;
+
+
+    PageWindow(ThreadPoolExecutor threadPool, int size) {
+        this.threadPool = threadPool;
+        this.size = Math.max(size, 1);
+        this.permits = new Semaphore(this.size);
+        this.error = new AtomicReference<>();
+    }
+
+
+    /**
+     * Submit one page, block until a permit is available
+     * @param work extract and/or load a page
+     */
+    void submit(Runnable work) {
+        checkError();
+        acquire(1);
+        try {
+            threadPool.execute(() -> {
+                try {
+                    work.run();
+                } catch (Throwable e) {
+                    if (!error.compareAndSet(null, e)) {
+                        log.warn("[ETL] Page failed after a previous failure: {}", e.getMessage());
+                    }
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw new SystemException(e);
+        }
+    }
+
+
+    /**
+     * Wait for all the submitted pages completed
+     * @throws GeneralException the first failure of the pages
+     */
+    void await() {
+        acquire(size);
+        permits.release(size);
+        checkError();
+    }
+
+
+    private void acquire(int n) {
+        try {
+            permits.acquire(n);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException(e);
+        }
+    }
+
+
+    private void checkError() {
+        Throwable e = error.get();
+        if (null == e) {
+            return;
+        }
+        if (e instanceof GeneralException) {
+            throw (GeneralException) e;
+        }
+        throw new SystemException(e);
+    }
+
+}
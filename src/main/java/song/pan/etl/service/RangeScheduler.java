@@ -0,0 +1,305 @@
+package song.pan.etl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import song.pan.etl.common.exception.GeneralException;
+import song.pan.etl.common.exception.SystemException;
+import song.pan.etl.service.range.RangeSplitter;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Work-stealing scheduler of key ranges. The ranges are dealt to channels as contiguous blocks,
+ * each channel takes ranges from the front of its own block, an idle channel steals the back half
+ * of the largest block left. If a block has only one range left, the range is split in two by
+ * key math and the upper half is stolen, so a slow range keeps as many channels busy as possible.
+ * Each channel holds one page at a time, the number of pages in memory is bounded by the channels.
+ * Given the target rows of a page, a range expected larger than the target by the last page
+ * of its channel is re-planned into smaller ranges before it runs.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+@Slf4j
+class RangeScheduler {
+
+
+    /**
+     * Key range (after, upTo], null bound means unbounded
+     */
+    static class Range {
+        final Object after;
+        final Object upTo;
+
+        /**
+         * Part of the planned range this range covers, 1 if not split
+         */
+        final double share;
+
+        Range(Object after, Object upTo) {
+            this(after, upTo, 1);
+        }
+
+        Range(Object after, Object upTo, double share) {
+            this.after = after;
+            this.upTo = upTo;
+            this.share = share;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + after + ", " + upTo + "]";
+        }
+    }
+
+
+    @FunctionalInterface
+    interface RangeWork {
+        /**
+         * Extract and load one range as a page
+         * @return rows of the page
+         */
+        long run(long pageIndex, Range range);
+    }
+
+
+    /**
+     * Most parts a range is re-planned into at once
+     */
+    private static final int MAX_PARTS = 16;
+
+
+    private final ThreadPoolExecutor threadPool;
+    private final RangeSplitter splitter;
+    private final List<LinkedList<Range>> blocks;
+    private final AtomicLong pageIndex;
+    private final AtomicReference<Throwable> error;
+    private final LongSupplier targetRows;
+
+
+    /**
+     * @param threadPool runs one worker per channel
+     * @param splitter key math to split a single range, null if ranges can not be split
+     */
+    RangeScheduler(ThreadPoolExecutor threadPool, RangeSplitter splitter) {
+        this(threadPool, splitter, null);
+    }
+
+
+    /**
+     * @param targetRows rows a page should have, the remaining ranges are re-planned
+     *                   if the pages run larger, null to keep the planned ranges
+     */
+    RangeScheduler(ThreadPoolExecutor threadPool, RangeSplitter splitter, LongSupplier targetRows) {
+        this.threadPool = threadPool;
+        this.splitter = splitter;
+        this.blocks = new ArrayList<>();
+        this.pageIndex = new AtomicLong();
+        this.error = new AtomicReference<>();
+        this.targetRows = targetRows;
+    }
+
+
+    /**
+     * Ranges (null, b1], (b1, b2] ... (bn, null)
+     * @param bounds inner boundaries in ascending order
+     */
+    static List<Range> rangesOf(List<Object> bounds) {
+        List<Range> ranges = new ArrayList<>(bounds.size() + 1);
+        Object after = null;
+        for (Object bound : bounds) {
+            ranges.add(new Range(after, bound));
+            after = bound;
+        }
+        ranges.add(new Range(after, null));
+        return ranges;
+    }
+
+
+    /**
+     * Run all the ranges and wait for completion
+     * @throws GeneralException the first failure of the ranges
+     */
+    void run(List<Range> ranges, RangeWork work) {
+        int channels = Math.max(1, Math.min(threadPool.getMaximumPoolSize(), ranges.size()));
+        for (int i = 0; i < channels; i++) {
+            int from = (int) ((long) ranges.size() * i / channels);
+            int to = (int) ((long) ranges.size() * (i + 1) / channels);
+            blocks.add(new LinkedList<>(ranges.subList(from, to)));
+        }
+
+        CountDownLatch done = new CountDownLatch(channels);
+        for (int i = 0; i < channels; i++) {
+            LinkedList<Range> own = blocks.get(i);
+            try {
+                threadPool.execute(() -> {
+                    try {
+                        work(own, work);
+                    } catch (Throwable e) {
+                        if (!error.compareAndSet(null, e)) {
+                            log.warn("[ETL] Range failed after a previous failure: {}", e.getMessage());
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                error.compareAndSet(null, e);
+                done.countDown();
+            }
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException(e);
+        }
+        checkError();
+    }
+
+
+    private void work(LinkedList<Range> own, RangeWork work) {
+        // rows of a whole planned range, measured by the last page of this channel
+        double plannedRows = 0;
+        while (null == error.get()) {
+            Range range;
+            synchronized (own) {
+                range = own.pollFirst();
+            }
+            if (null == range) {
+                range = steal(own);
+                if (null == range) {
+                    return;
+                }
+            }
+            range = replan(own, range, plannedRows);
+            long rows = work.run(pageIndex.incrementAndGet(), range);
+            plannedRows = rows / range.share;
+        }
+    }
+
+
+    /**
+     * Split the range if it is expected larger than the target rows, assuming the neighbouring
+     * planned ranges are as dense as the last one of this channel. The lower part runs now,
+     * the other parts are put back to the front of own block.
+     */
+    private Range replan(LinkedList<Range> own, Range range, double plannedRows) {
+        if (null == targetRows || plannedRows <= 0 || !isSplittable(range)) {
+            return range;
+        }
+        long parts = Math.min(MAX_PARTS, (long) (plannedRows * range.share / Math.max(targetRows.getAsLong(), 1)));
+        if (parts < 2) {
+            return range;
+        }
+        List<Object> bounds = splitter.split(range.after, range.upTo, (int) parts);
+        if (bounds.isEmpty()) {
+            return range;
+        }
+
+        double share = range.share / (bounds.size() + 1);
+        List<Range> split = new ArrayList<>(bounds.size() + 1);
+        Object after = range.after;
+        for (Object bound : bounds) {
+            split.add(new Range(after, bound, share));
+            after = bound;
+        }
+        split.add(new Range(after, range.upTo, share));
+        log.info("[ETL] Re-plan range {} into {} ranges", range, split.size());
+        synchronized (own) {
+            own.addAll(0, split.subList(1, split.size()));
+        }
+        return split.get(0);
+    }
+
+
+    private boolean isSplittable(Range range) {
+        return null != splitter && splitter.isBounded() && null != range.after && null != range.upTo;
+    }
+
+
+    /**
+     * @return a range stolen from the largest block, null if nothing left
+     */
+    private Range steal(LinkedList<Range> own) {
+        while (true) {
+            LinkedList<Range> victim = null;
+            int most = 0;
+            for (LinkedList<Range> block : blocks) {
+                int size;
+                synchronized (block) {
+                    size = block.size();
+                }
+                if (block != own && size > most) {
+                    victim = block;
+                    most = size;
+                }
+            }
+            if (null == victim) {
+                return null;
+            }
+
+            synchronized (victim) {
+                // changed since sized
+                if (victim.isEmpty()) {
+                    continue;
+                }
+                if (victim.size() > 1) {
+                    int keep = victim.size() / 2;
+                    List<Range> stolen = new ArrayList<>(victim.subList(keep, victim.size()));
+                    victim.subList(keep, victim.size()).clear();
+                    log.info("[ETL] Stole {} ranges from {}", stolen.size(), stolen.get(0));
+                    synchronized (own) {
+                        own.addAll(stolen.subList(1, stolen.size()));
+                    }
+                    return stolen.get(0);
+                }
+                Range last = victim.getFirst();
+                Range upper = splitUpper(last);
+                if (null == upper) {
+                    victim.removeFirst();
+                    return last;
+                }
+                victim.set(0, new Range(last.after, upper.after, upper.share));
+                log.info("[ETL] Split range {} at {}", last, upper.after);
+                return upper;
+            }
+        }
+    }
+
+
+    /**
+     * @return upper half of the range, null if the range can not be split
+     */
+    private Range splitUpper(Range range) {
+        if (!isSplittable(range)) {
+            return null;
+        }
+        List<Object> mid = splitter.split(range.after, range.upTo, 2);
+        if (mid.isEmpty()) {
+            return null;
+        }
+        return new Range(mid.get(0), range.upTo, range.share / 2);
+    }
+
+
+    private void checkError() {
+        Throwable e = error.get();
+        if (null == e) {
+            return;
+        }
+        if (e instanceof GeneralException) {
+            throw (GeneralException) e;
+        }
+        throw new SystemException(e);
+    }
+
+}
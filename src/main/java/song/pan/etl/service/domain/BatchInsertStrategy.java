@@ -15,6 +15,19 @@ public enum BatchInsertStrategy {
      * {@link org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate}
      * use field name as placeholder
      */
-    SPRING
+    SPRING,
+
+    /**
+     * Multi-row insert statement e.g. INSERT INTO T(A,B) VALUES (?,?),(?,?),
+     * statements are sized by the server's limits,
+     * falls back to {@link #JDBC} if the server does not support it
+     */
+    VALUES,
+
+    /**
+     * Server's bulk load path, LOAD DATA LOCAL INFILE of MySQL, bulk copy of SQL Server
+     * and jConnect bulk load of Sybase, falls back to {@link #JDBC} if the driver does not support it
+     */
+    BULK
 
 }
@@ -28,6 +28,11 @@ public class ETLConfig {
 
     private String query;
 
+    /**
+     * If the query selects the source table as it is, set when the query is built from the table
+     */
+    private boolean plainTable;
+
     /**
      * SQL scripts to execute in source server before ETL
      */
@@ -60,9 +65,27 @@ public class ETLConfig {
 
     private List<String> paginationKeys;
 
+    /**
+     * If no two rows share the same pagination key values,
+     * set when the keys come from a primary key or an unique index
+     */
+    private boolean uniquePaginationKey;
+
 
     private int channel;
 
+    /**
+     * Number of extract channels, {@link #channel} if not set.
+     * Each channel pins a source connection for the whole task
+     */
+    private int extractChannel;
+
+    /**
+     * Number of load channels, {@link #channel} if not set.
+     * Each channel pins a destination connection for the whole task
+     */
+    private int loadChannel;
+
     private String replicaDatabase;
     private Table replicaTable;
 
@@ -80,13 +103,49 @@ public class ETLConfig {
 
     private long loadChunkSize;
 
+    /**
+     * If page and batch sizes are adjusted while the task runs,
+     * starting from {@link #extractChunkSize} and {@link #loadChunkSize}
+     */
+    private boolean adaptiveChunkSize;
+
+    /**
+     * Time a page should take to extract and a batch to load, when chunk size is adaptive
+     */
+    private long targetPageTimeMs;
+
+    /**
+     * Memory the pages in flight of the task may take, when chunk size is adaptive
+     */
+    private long memoryBudgetMb;
+
+    /**
+     * Max number of pages extracted but not loaded yet,
+     * extraction blocks when the limit reached
+     */
+    private int maxPagesInFlight;
+
     private boolean clear;
 
     private ConflictStrategy conflictStrategy;
 
     private PaginationStrategy paginationStrategy;
 
+    private WorkloadEstimation workloadEstimation;
+
     private BatchInsertStrategy batchInsertStrategy;
 
+    /**
+     * Rows per batch of {@link BatchInsertStrategy#BULK}, 0 to load a page in one batch
+     */
+    private int bulkLoadBatchSize;
+
+    /**
+     * If {@link BatchInsertStrategy#BULK} locks the whole target table
+     */
+    private boolean bulkLoadTableLock;
+
+    private PageLayout pageLayout;
+
 
 }
@@ -20,8 +20,34 @@ public class ETLStatus {
 
     private long current;
 
+    /**
+     * If {@link #expect} is estimated by statistics instead of counted,
+     * it is replaced by {@link #extracted} when the extraction completes,
+     * the loaded rows are then checked against the rows extracted
+     */
+    private boolean estimated;
+
+    /**
+     * Number of rows extracted and handed over to loading
+     */
+    private long extracted;
+
     private Boolean success;
 
+    /**
+     * Number of loaded pages and the least/most rows of them,
+     * shows how evenly the query is split
+     */
+    private long pages;
+    private long minPageRows;
+    private long maxPageRows;
+
+    /**
+     * Page and batch sizes in use, changed while running if chunk size is adaptive
+     */
+    private long extractChunkSize;
+    private long loadChunkSize;
+
     private Date start;
     private Date end;
 
@@ -33,4 +59,21 @@ public class ETLStatus {
         this.errors = new LinkedList<>();
     }
 
+    public synchronized void addExtracted(long rows) {
+        extracted += rows;
+    }
+
+    public synchronized void recordPage(long rows) {
+        minPageRows = pages == 0 ? rows : Math.min(minPageRows, rows);
+        maxPageRows = Math.max(maxPageRows, rows);
+        pages++;
+    }
+
+    /**
+     * @return ratio of the largest page to the average page, 1 if evenly split
+     */
+    public double getPageSkew() {
+        return pages == 0 || current == 0 ? 0 : maxPageRows * (double) pages / current;
+    }
+
 }
@@ -24,10 +24,17 @@ public class ETLTask {
     @JsonIgnore
     private List<ThreadPoolExecutor> threadPools;
 
+    /**
+     * Held for the life of the task, closed when the task ends
+     */
+    @JsonIgnore
+    private List<AutoCloseable> resources;
+
     public ETLTask(ETLConfig config) {
         this.id = UUID.randomUUID().toString();
         this.config = config;
         this.status = new ETLStatus();
         this.threadPools = new LinkedList<>();
+        this.resources = new LinkedList<>();
     }
 }
@@ -2,7 +2,9 @@ package song.pan.etl.service.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import song.pan.etl.rdbms.element.ColumnBatch;
 import song.pan.etl.rdbms.element.Row;
+import song.pan.etl.rdbms.element.RowSchema;
 
 import java.util.List;
 
@@ -19,8 +21,22 @@ public class Page {
     private long extractTimeMs;
     private long loadTimeMs;
 
+    /**
+     * Column names shared by all the rows of this page
+     */
+    private RowSchema schema;
+
+    /**
+     * Data in {@link PageLayout#COLUMNAR} layout, used instead of {@link #data}
+     */
+    private ColumnBatch columns;
+
     public Page(List<Row> data) {
-        this.data = data;
+        setData(data);
+    }
+
+    public Page(ColumnBatch columns) {
+        setColumns(columns);
     }
 
     public Page(long index) {
@@ -29,6 +45,50 @@ public class Page {
 
     public Page(long index, List<Row> data) {
         this.index = index;
+        setData(data);
+    }
+
+    public void setData(List<Row> data) {
         this.data = data;
+        if (null != data && !data.isEmpty()) {
+            this.schema = data.get(0).getSchema();
+        }
+    }
+
+    public void setColumns(ColumnBatch columns) {
+        this.columns = columns;
+        if (null != columns) {
+            this.schema = columns.getSchema();
+        }
+    }
+
+    /**
+     * @return number of rows in this page
+     */
+    public int size() {
+        if (null != columns) {
+            return columns.size();
+        }
+        return null == data ? 0 : data.size();
+    }
+
+    /**
+     * @param row row index in this page
+     * @param ordinal column ordinal in {@link #schema}
+     * @return value of the column in the row
+     */
+    public Object valueOf(int row, int ordinal) {
+        return null != columns ? columns.get(row, ordinal) : data.get(row).get(ordinal);
+    }
+
+    /**
+     * A page holding part of the rows of this page
+     * @param from first row, inclusive
+     * @param to last row, exclusive
+     */
+    public Page slice(int from, int to) {
+        Page page = null != columns ? new Page(columns.slice(from, to)) : new Page(data.subList(from, to));
+        page.setIndex(index);
+        return page;
     }
 }
@@ -0,0 +1,25 @@
+package song.pan.etl.service.domain;
+
+import song.pan.etl.rdbms.element.ColumnBatch;
+import song.pan.etl.rdbms.element.Row;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public enum PageLayout {
+
+    /**
+     * Keep a page as a list of {@link Row}
+     */
+    ROW,
+
+
+    /**
+     * Keep a page as a {@link ColumnBatch}, numeric and temporal
+     * columns are stored in primitive arrays without boxing
+     */
+    COLUMNAR,
+    ;
+
+}
@@ -15,9 +15,9 @@ public enum PaginationStrategy {
 
 
     /**
-     * Order the query by pagination key and extract certain
+     * Order the query by pagination keys and extract certain
      * number of top rows from the ordered results as one page,
-     * use the page's last row as next query's start boundary
+     * next page starts after the key tuple of the page's last row
      */
     DEPENDENT,
 
@@ -29,9 +29,19 @@ public enum PaginationStrategy {
     DISTRIBUTE,
 
 
+    /**
+     * Scan the pagination keys in order first and record every
+     * extract-chunk-size-th key tuple as split point, then extract
+     * the ranges between split points in parallel, works with any
+     * comparable keys, including composite and non-numeric keys
+     */
+    PRESCAN,
+
+
     /**
      * Copy the query results to a new table and
-     * generate an auto-increased id as pagination key
+     * generate an auto-increased id as pagination key,
+     * only the keys are copied if an unique key is found
      */
     GENERATE,
 
@@ -40,6 +50,14 @@ public enum PaginationStrategy {
      * For mysql keywords offset limit
      */
     OFFSET_LIMIT,
+
+
+    /**
+     * Split the query into disjoint partitions by the hash of
+     * pagination keys or the whole row, one partition per channel,
+     * for tables without any usable key
+     */
+    HASH,
     ;
 
 
@@ -0,0 +1,22 @@
+package song.pan.etl.service.domain;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public enum WorkloadEstimation {
+
+    /**
+     * Count the query results before ETL, exact but scans the whole query
+     */
+    COUNT,
+
+    /**
+     * Read the row count of a plain table from catalog statistics to plan the pages,
+     * the rows are counted exactly as they are extracted.
+     * Falls back to {@link #COUNT} for queries, if no statistics available,
+     * or if the pages may skip null pagination keys
+     */
+    STATISTICS
+
+}
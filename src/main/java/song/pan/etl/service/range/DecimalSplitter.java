@@ -0,0 +1,43 @@
+package song.pan.etl.service.range;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decimal and floating point keys, boundaries keep the larger scale of min and max
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class DecimalSplitter implements RangeSplitter {
+
+    @Override
+    public List<Object> split(Object min, Object max, long n) {
+        BigDecimal lo = toBigDecimal(min);
+        BigDecimal hi = toBigDecimal(max);
+        int scale = Math.max(Math.max(lo.scale(), hi.scale()), 0);
+        BigDecimal width = hi.subtract(lo);
+        BigDecimal parts = BigDecimal.valueOf(Math.max(n, 1));
+
+        List<Object> boundaries = new ArrayList<>();
+        BigDecimal previous = lo;
+        for (long i = 1; i < n; i++) {
+            BigDecimal boundary = lo.add(width.multiply(BigDecimal.valueOf(i)).divide(parts, scale, RoundingMode.DOWN));
+            if (boundary.compareTo(previous) > 0) {
+                boundaries.add(boundary);
+                previous = boundary;
+            }
+        }
+        return boundaries;
+    }
+
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        return new BigDecimal(value.toString());
+    }
+}
@@ -0,0 +1,41 @@
+package song.pan.etl.service.range;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Integer keys of any width, computed in {@link BigInteger} so that
+ * unsigned bigint does not overflow
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class IntegralSplitter implements RangeSplitter {
+
+    @Override
+    public List<Object> split(Object min, Object max, long n) {
+        BigInteger lo = toBigInteger(min);
+        BigInteger width = toBigInteger(max).subtract(lo);
+        BigInteger parts = BigInteger.valueOf(Math.max(n, 1));
+
+        List<Object> boundaries = new ArrayList<>();
+        BigInteger previous = lo;
+        for (long i = 1; i < n; i++) {
+            BigInteger boundary = lo.add(width.multiply(BigInteger.valueOf(i)).divide(parts));
+            if (boundary.compareTo(previous) > 0) {
+                boundaries.add(boundary);
+                previous = boundary;
+            }
+        }
+        return boundaries;
+    }
+
+
+    private static BigInteger toBigInteger(Object value) {
+        if (value instanceof BigInteger) {
+            return (BigInteger) value;
+        }
+        return new BigInteger(value.toString());
+    }
+}
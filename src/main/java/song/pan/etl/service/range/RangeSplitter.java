@@ -0,0 +1,34 @@
+package song.pan.etl.service.range;
+
+import java.util.List;
+
+/**
+ * Range math of one type of pagination key,
+ * splits the key space between two values into ranges.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+@FunctionalInterface
+public interface RangeSplitter {
+
+    /**
+     * Split [min, max] into about {@code n} ranges of the same width
+     * @param min min value of the key
+     * @param max max value of the key
+     * @param n number of ranges
+     * @return inner boundaries in ascending order without duplicates, min and max excluded,
+     * each of them closes one range, i.e. (previous boundary, boundary]
+     */
+    List<Object> split(Object min, Object max, long n);
+
+
+    /**
+     * @return {@code true} if the boundaries always fall between min and max under the server's order,
+     * required to split a range bounded on both ends
+     */
+    default boolean isBounded() {
+        return true;
+    }
+
+}
@@ -0,0 +1,56 @@
+package song.pan.etl.service.range;
+
+import song.pan.etl.rdbms.ColumnCodec;
+import song.pan.etl.rdbms.DataType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Registry of {@link RangeSplitter} by the java representation of key types
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+public final class RangeSplitters {
+
+    private static final Map<ColumnCodec.Kind, RangeSplitter> SPLITTERS = new EnumMap<>(ColumnCodec.Kind.class);
+
+    static {
+        RangeSplitter integral = new IntegralSplitter();
+        register(ColumnCodec.Kind.LONG, integral);
+        register(ColumnCodec.Kind.INT, integral);
+        register(ColumnCodec.Kind.BIG_INTEGER, integral);
+        RangeSplitter decimal = new DecimalSplitter();
+        register(ColumnCodec.Kind.DECIMAL, decimal);
+        register(ColumnCodec.Kind.DOUBLE, decimal);
+        RangeSplitter temporal = new TemporalSplitter();
+        register(ColumnCodec.Kind.TIMESTAMP, temporal);
+        register(ColumnCodec.Kind.DATE, temporal);
+        register(ColumnCodec.Kind.TIME, temporal);
+        register(ColumnCodec.Kind.STRING, new StringSplitter());
+    }
+
+    private RangeSplitters() {
+    }
+
+
+    public static synchronized void register(ColumnCodec.Kind kind, RangeSplitter splitter) {
+        SPLITTERS.put(kind, splitter);
+    }
+
+
+    /**
+     * @param dataType key type, may be null if unknown
+     * @return splitter of the type, null if the type can not be split
+     */
+    public static RangeSplitter of(DataType<?> dataType) {
+        return of(ColumnCodec.Kind.of(dataType));
+    }
+
+
+    public static synchronized RangeSplitter of(ColumnCodec.Kind kind) {
+        return SPLITTERS.get(kind);
+    }
+
+}
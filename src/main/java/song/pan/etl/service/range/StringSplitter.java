@@ -0,0 +1,106 @@
+package song.pan.etl.service.range;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lexicographic split of string keys. Characters after the common prefix of min and max
+ * are read as digits of base 36 ([0-9a-z]) and interpolated, boundaries are made of the
+ * common prefix and the same alphabet, so they ascend under both binary and case-insensitive
+ * collations, and the ranges never overlap whatever the collation is.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class StringSplitter implements RangeSplitter {
+
+    private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyz";
+    private static final BigInteger RADIX = BigInteger.valueOf(ALPHABET.length());
+
+    /**
+     * Number of characters after the common prefix taking part in the interpolation
+     */
+    private static final int WIDTH = 6;
+
+
+    /**
+     * The server's collation may order the alphabet differently from min and max
+     */
+    @Override
+    public boolean isBounded() {
+        return false;
+    }
+
+
+    @Override
+    public List<Object> split(Object min, Object max, long n) {
+        String lo = min.toString();
+        String hi = max.toString();
+        int prefixLength = 0;
+        while (prefixLength < lo.length() && prefixLength < hi.length()
+                && lo.charAt(prefixLength) == hi.charAt(prefixLength)) {
+            prefixLength++;
+        }
+        String prefix = lo.substring(0, prefixLength);
+
+        BigInteger from = toNumber(lo, prefixLength);
+        BigInteger width = toNumber(hi, prefixLength).subtract(from);
+        List<Object> boundaries = new ArrayList<>();
+        if (width.signum() <= 0) {
+            return boundaries;
+        }
+
+        BigInteger parts = BigInteger.valueOf(Math.max(n, 1));
+        BigInteger previous = from;
+        for (long i = 1; i < n; i++) {
+            BigInteger boundary = from.add(width.multiply(BigInteger.valueOf(i)).divide(parts));
+            if (boundary.compareTo(previous) > 0) {
+                boundaries.add(prefix + toDigits(boundary));
+                previous = boundary;
+            }
+        }
+        return boundaries;
+    }
+
+
+    private static BigInteger toNumber(String value, int from) {
+        BigInteger number = BigInteger.ZERO;
+        for (int i = from; i < from + WIDTH; i++) {
+            int digit = i < value.length() ? digitOf(value.charAt(i)) : 0;
+            number = number.multiply(RADIX).add(BigInteger.valueOf(digit));
+        }
+        return number;
+    }
+
+
+    /**
+     * @return the largest digit not greater than the character
+     */
+    private static int digitOf(char c) {
+        char lower = Character.toLowerCase(c);
+        int digit = 0;
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            if (ALPHABET.charAt(i) <= lower) {
+                digit = i;
+            }
+        }
+        return digit;
+    }
+
+
+    private static String toDigits(BigInteger number) {
+        char[] digits = new char[WIDTH];
+        for (int i = WIDTH - 1; i >= 0; i--) {
+            BigInteger[] qr = number.divideAndRemainder(RADIX);
+            digits[i] = ALPHABET.charAt(qr[1].intValue());
+            number = qr[0];
+        }
+        // trailing zeros do not change the order of boundaries
+        int end = WIDTH;
+        while (end > 1 && digits[end - 1] == '0') {
+            end--;
+        }
+        return new String(digits, 0, end);
+    }
+}
@@ -0,0 +1,64 @@
+package song.pan.etl.service.range;
+
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Date, time and timestamp keys, split by time interval.
+ * Boundaries are truncated to seconds so that their literals are exact on every server.
+ *
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class TemporalSplitter implements RangeSplitter {
+
+    private static final long SECOND = 1000L;
+    private static final long DAY = 24 * 60 * 60 * SECOND;
+
+
+    @Override
+    public List<Object> split(Object min, Object max, long n) {
+        long lo = millisOf(min);
+        long hi = millisOf(max);
+        // date keys have no time part, split them by days
+        long unit = min instanceof java.sql.Date || min instanceof LocalDate ? DAY : SECOND;
+
+        List<Object> boundaries = new ArrayList<>();
+        long previous = Math.floorDiv(lo, unit);
+        for (long i = 1; i < n; i++) {
+            long boundary = Math.floorDiv(lo + (long) ((hi - lo) * ((double) i / n)), unit);
+            if (boundary > previous) {
+                boundaries.add(toValue(min, boundary * unit));
+                previous = boundary;
+            }
+        }
+        return boundaries;
+    }
+
+
+    private static long millisOf(Object value) {
+        if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value).getTime();
+        }
+        if (value instanceof LocalDate) {
+            return java.sql.Date.valueOf((LocalDate) value).getTime();
+        }
+        return ((Date) value).getTime();
+    }
+
+
+    private static Object toValue(Object sample, long millis) {
+        if (sample instanceof java.sql.Date || sample instanceof LocalDate) {
+            return new java.sql.Date(millis);
+        }
+        if (sample instanceof Time) {
+            return new Time(millis);
+        }
+        return new Timestamp(millis);
+    }
+}
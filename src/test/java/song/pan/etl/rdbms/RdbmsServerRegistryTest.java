@@ -0,0 +1,165 @@
+package song.pan.etl.rdbms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import song.pan.etl.common.util.CacheHolder;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class RdbmsServerRegistryTest {
+
+    private final Function<ConnectionProperties, RdbmsServer> factory = RdbmsServerRegistry.factory;
+
+    /**
+     * Times each server is disconnected
+     */
+    private final Map<RdbmsServer, Integer> disconnects = new IdentityHashMap<>();
+
+    private final String name = "registry-test-" + UUID.randomUUID();
+
+
+    @BeforeEach
+    void stubServers() {
+        RdbmsServerRegistry.factory = properties -> (RdbmsServer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RdbmsServer.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "disconnect":
+                            synchronized (disconnects) {
+                                disconnects.merge((RdbmsServer) proxy, 1, Integer::sum);
+                            }
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return properties.getName();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        CacheHolder.set(CacheHolder.CacheType.SERVER, name, propertiesOf(name));
+    }
+
+
+    @AfterEach
+    void restore() {
+        RdbmsServerRegistry.remove(name);
+        CacheHolder.remove(CacheHolder.CacheType.SERVER, name);
+        RdbmsServerRegistry.factory = factory;
+    }
+
+
+    @Test
+    void leasesShareOneServer() {
+        RdbmsServer first = RdbmsServerRegistry.acquire(name);
+        RdbmsServer second = RdbmsServerRegistry.acquire(name);
+        RdbmsServerRegistry.release(first);
+        RdbmsServerRegistry.release(second);
+
+        assertSame(first, second);
+        assertEquals(0, disconnectsOf(first));
+    }
+
+
+    @Test
+    void replacedServerIsClosedOnceReleased() {
+        RdbmsServerRegistry.register(propertiesOf(name));
+        RdbmsServer old = RdbmsServerRegistry.acquire(name);
+
+        RdbmsServerRegistry.register(propertiesOf(name));
+        RdbmsServer current = RdbmsServerRegistry.acquire(name);
+        assertNotSame(old, current);
+        assertEquals(0, disconnectsOf(old));
+
+        RdbmsServerRegistry.release(old);
+        assertEquals(1, disconnectsOf(old));
+        RdbmsServerRegistry.release(current);
+        assertEquals(0, disconnectsOf(current));
+    }
+
+
+    @Test
+    void removedServerIsClosedAtOnceIfNotLeased() {
+        RdbmsServerRegistry.register(propertiesOf(name));
+        RdbmsServer server = RdbmsServerRegistry.acquire(name);
+        RdbmsServerRegistry.release(server);
+
+        RdbmsServerRegistry.remove(name);
+
+        assertEquals(1, disconnectsOf(server));
+        assertNotSame(server, RdbmsServerRegistry.acquire(name));
+    }
+
+
+    @Test
+    void openedServerIsNotShared() {
+        RdbmsServer shared = RdbmsServerRegistry.acquire(name);
+        RdbmsServer opened = RdbmsServerRegistry.open(name);
+        assertNotSame(shared, opened);
+
+        RdbmsServerRegistry.release(opened);
+        assertEquals(1, disconnectsOf(opened));
+        RdbmsServerRegistry.release(shared);
+        assertEquals(0, disconnectsOf(shared));
+    }
+
+
+    @Test
+    void idlePoolIsClosedOnceAndReusedOnLease() {
+        long later = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(RdbmsServerRegistry.IDLE_TIMEOUT_MINUTES + 1);
+        RdbmsServer server = RdbmsServerRegistry.acquire(name);
+
+        // leased servers are never idle
+        RdbmsServerRegistry.evictIdle(later);
+        assertEquals(0, disconnectsOf(server));
+
+        RdbmsServerRegistry.release(server);
+        RdbmsServerRegistry.evictIdle(later);
+        RdbmsServerRegistry.evictIdle(later);
+        assertEquals(1, disconnectsOf(server));
+
+        // connected again on demand by the same server
+        assertSame(server, RdbmsServerRegistry.acquire(name));
+        RdbmsServerRegistry.release(server);
+    }
+
+
+    @Test
+    void serverRemovedFromCacheIsRetired() {
+        RdbmsServer server = RdbmsServerRegistry.acquire(name);
+        CacheHolder.remove(CacheHolder.CacheType.SERVER, name);
+
+        RdbmsServerRegistry.evictIdle();
+        assertEquals(0, disconnectsOf(server));
+
+        RdbmsServerRegistry.release(server);
+        assertEquals(1, disconnectsOf(server));
+    }
+
+
+    private int disconnectsOf(RdbmsServer server) {
+        synchronized (disconnects) {
+            return disconnects.getOrDefault(server, 0);
+        }
+    }
+
+
+    private static ConnectionProperties propertiesOf(String name) {
+        ConnectionProperties properties = new ConnectionProperties();
+        properties.setName(name);
+        properties.setUrl("jdbc:mysql://localhost:3306/");
+        return properties;
+    }
+
+}
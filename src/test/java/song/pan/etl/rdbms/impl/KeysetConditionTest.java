@@ -0,0 +1,60 @@
+package song.pan.etl.rdbms.impl;
+
+import org.junit.jupiter.api.Test;
+import song.pan.etl.rdbms.element.PreparedQuery;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class KeysetConditionTest {
+
+    private static final String QUERY = "SELECT * FROM orders";
+
+
+    @Test
+    void singleKeyComparesDirectly() {
+        PreparedQuery select = new SybaseServer().selectAfter(QUERY, Collections.singletonList("id"),
+                Collections.singletonList(10), 100);
+
+        assertEquals("SELECT TOP 100 * FROM (SELECT * FROM orders) t WHERE id > ? ORDER BY id", select.getSql());
+        assertEquals(Collections.singletonList(10), select.getParameters());
+    }
+
+
+    @Test
+    void compositeKeysAreExpandedWithLeadingRange() {
+        List<String> keys = Arrays.asList("a", "b", "c");
+        PreparedQuery select = new SybaseServer().selectRange(QUERY, keys, Arrays.asList(1, 2, 3), Arrays.asList(7, 8, 9));
+
+        assertEquals("SELECT * FROM (SELECT * FROM orders) t WHERE "
+                + "a >= ? AND (a > ? OR (a = ? AND b > ?) OR (a = ? AND b = ? AND c > ?))"
+                + " AND a <= ? AND (a < ? OR (a = ? AND b < ?) OR (a = ? AND b = ? AND c <= ?))", select.getSql());
+        assertEquals(Arrays.asList(1, 1, 1, 2, 1, 2, 3, 7, 7, 7, 8, 7, 8, 9), select.getParameters());
+    }
+
+
+    @Test
+    void openRangeHasOnlyUpperBound() {
+        PreparedQuery select = new SybaseServer().selectRange(QUERY, Arrays.asList("a", "b"), null, Arrays.asList(7, 8));
+
+        assertEquals("SELECT * FROM (SELECT * FROM orders) t WHERE a <= ? AND (a < ? OR (a = ? AND b <= ?))", select.getSql());
+        assertEquals(Arrays.asList(7, 7, 7, 8), select.getParameters());
+    }
+
+
+    @Test
+    void mysqlComparesRowValues() {
+        PreparedQuery select = new MySQLServer().selectRange(QUERY, Arrays.asList("a", "b"), Arrays.asList(1, 2), Arrays.asList(7, 8));
+
+        assertEquals("SELECT * FROM (SELECT * FROM orders) t WHERE (a,b) > (?,?) AND (a,b) <= (?,?)", select.getSql());
+        assertEquals(Arrays.asList(1, 2, 7, 8), select.getParameters());
+    }
+
+}
@@ -0,0 +1,106 @@
+package song.pan.etl.rdbms.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class LoadDataInputStreamTest {
+
+    private static final LoadDataInputStream.Field[] TEXT = {LoadDataInputStream.Field.TEXT};
+
+
+    @Test
+    void separatorsAreEscaped() throws IOException {
+        Object[][] rows = {{"a\tb\nc\\d\re\0f"}};
+
+        assertEquals("a\\tb\\nc\\\\d\\re\\0f\n", readText(TEXT, rows));
+    }
+
+
+    @Test
+    void fieldsAreTabSeparatedAndNullIsMarked() throws IOException {
+        LoadDataInputStream.Field[] fields = {LoadDataInputStream.Field.TEXT, LoadDataInputStream.Field.TEXT,
+                LoadDataInputStream.Field.TEXT};
+        Object[][] rows = {{1, null, "x"}, {true, new BigDecimal("1E+3"), "中文"}};
+
+        assertEquals("1\t\\N\tx\n1\t1000\t中文\n", readText(fields, rows));
+    }
+
+
+    @Test
+    void bytesAreWrittenAsTheyAre() throws IOException {
+        Object[][] rows = {{new byte[]{(byte) 0xff, '\t', 0x00, (byte) 0xc3}}};
+
+        assertArrayEquals(new byte[]{(byte) 0xff, '\\', 't', '\\', '0', (byte) 0xc3, '\n'}, read(TEXT, rows));
+    }
+
+
+    @Test
+    void binaryColumnsAreHex() throws IOException {
+        Object[][] rows = {{new byte[]{0x01, (byte) 0xab, 0x00}}};
+
+        assertEquals("01AB00\n", readText(new LoadDataInputStream.Field[]{LoadDataInputStream.Field.HEX}, rows));
+    }
+
+
+    @Test
+    void bitColumnsAreUnsignedNumbers() throws IOException {
+        Object[][] rows = {{new byte[]{0x01, 0x00}}, {new byte[]{(byte) 0xff}}};
+
+        assertEquals("256\n255\n", readText(new LoadDataInputStream.Field[]{LoadDataInputStream.Field.NUMBER}, rows));
+    }
+
+
+    @Test
+    void rowsBeyondOneBlockAreReadInFull() throws IOException {
+        Object[][] rows = new Object[5000][];
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"row\t" + i};
+            expected.append("row\\t").append(i).append('\n');
+        }
+
+        assertEquals(expected.toString(), readText(TEXT, rows));
+        // single bytes and blocks give the same content
+        InputStream in = new LoadDataInputStream(rows.length, TEXT, (row, column) -> rows[row][column]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int b = in.read(); b >= 0; b = in.read()) {
+            out.write(b);
+        }
+        assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    void noRowsIsEmpty() throws IOException {
+        assertEquals(-1, new LoadDataInputStream(0, TEXT, (row, column) -> null).read(new byte[16], 0, 16));
+    }
+
+
+    private static String readText(LoadDataInputStream.Field[] fields, Object[][] rows) throws IOException {
+        return new String(read(fields, rows), StandardCharsets.UTF_8);
+    }
+
+
+    private static byte[] read(LoadDataInputStream.Field[] fields, Object[][] rows) throws IOException {
+        InputStream in = new LoadDataInputStream(rows.length, fields, (row, column) -> rows[row][column]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        for (int n = in.read(buffer, 0, buffer.length); n >= 0; n = in.read(buffer, 0, buffer.length)) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+}
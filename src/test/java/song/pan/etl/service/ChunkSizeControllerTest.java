@@ -0,0 +1,111 @@
+package song.pan.etl.service;
+
+import org.junit.jupiter.api.Test;
+import song.pan.etl.service.domain.ETLStatus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class ChunkSizeControllerTest {
+
+    private final ETLStatus status = new ETLStatus();
+
+
+    @Test
+    void configuredSizesAreKeptIfNotAdaptive() {
+        ChunkSizeController controller = new ChunkSizeController(false, 1000, 500, 1000, Long.MAX_VALUE, status);
+
+        controller.extracted(1000, 1, 10);
+        controller.loaded(500, 100000);
+
+        assertEquals(1000, controller.extractChunkSize());
+        assertEquals(500, controller.loadChunkSize());
+        assertEquals(1000, status.getExtractChunkSize());
+        assertEquals(500, status.getLoadChunkSize());
+    }
+
+
+    @Test
+    void fastPageAtMostDoubles() {
+        ChunkSizeController controller = adaptive(1000, 1000);
+
+        controller.extracted(1000, 10, 0);
+
+        assertEquals(2000, controller.extractChunkSize());
+        assertEquals(2000, status.getExtractChunkSize());
+    }
+
+
+    @Test
+    void slowPageAtMostHalves() {
+        ChunkSizeController controller = adaptive(1000, 1000);
+
+        controller.extracted(1000, 100000, 0);
+
+        assertEquals(500, controller.extractChunkSize());
+    }
+
+
+    @Test
+    void sizeSettlesWithinAFifth() {
+        ChunkSizeController controller = adaptive(1000, 1000);
+
+        controller.extracted(1000, 1100, 0);
+        controller.loaded(1000, 900);
+
+        assertEquals(1000, controller.extractChunkSize());
+        assertEquals(1000, controller.loadChunkSize());
+    }
+
+
+    @Test
+    void pageIsCappedByMemoryBudget() {
+        ChunkSizeController controller = new ChunkSizeController(true, 1000, 1000, 1000, 300_000, status);
+
+        controller.extracted(1000, 1000, 1000);
+
+        assertEquals(300, controller.extractChunkSize());
+    }
+
+
+    @Test
+    void batchNeverExceedsPage() {
+        ChunkSizeController controller = adaptive(1000, 800);
+
+        controller.loaded(800, 10);
+
+        assertEquals(1000, controller.loadChunkSize());
+        assertEquals(1000, status.getLoadChunkSize());
+    }
+
+
+    @Test
+    void sizeNeverDropsBelowMinimum() {
+        ChunkSizeController controller = adaptive(150, 150);
+
+        controller.extracted(150, 100000, 0);
+        controller.loaded(150, 100000);
+
+        assertEquals(ChunkSizeController.MIN_SIZE, controller.extractChunkSize());
+        assertEquals(ChunkSizeController.MIN_SIZE, controller.loadChunkSize());
+    }
+
+
+    @Test
+    void smallSamplesAreIgnored() {
+        ChunkSizeController controller = adaptive(1000, 1000);
+
+        controller.extracted(ChunkSizeController.MIN_SIZE - 1, 100000, 0);
+
+        assertEquals(1000, controller.extractChunkSize());
+    }
+
+
+    private ChunkSizeController adaptive(long extractChunkSize, long loadChunkSize) {
+        return new ChunkSizeController(true, extractChunkSize, loadChunkSize, 1000, Long.MAX_VALUE, status);
+    }
+
+}
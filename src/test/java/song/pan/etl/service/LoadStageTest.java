@@ -0,0 +1,117 @@
+package song.pan.etl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import song.pan.etl.common.exception.GeneralException;
+import song.pan.etl.common.exception.SystemException;
+import song.pan.etl.rdbms.element.Row;
+import song.pan.etl.rdbms.element.RowSchema;
+import song.pan.etl.service.domain.Page;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class LoadStageTest {
+
+    private static final RowSchema SCHEMA = new RowSchema(Collections.singletonList("id"));
+
+    private final ThreadPoolExecutor threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+
+
+    @AfterEach
+    void shutdown() {
+        threadPool.shutdownNow();
+    }
+
+
+    @Test
+    void pageIsLoadedInBatchesAndReportedOnce() {
+        Queue<Integer> batches = new ConcurrentLinkedQueue<>();
+        Map<Long, Long> loaded = new ConcurrentHashMap<>();
+        LoadStage stage = new LoadStage(threadPool, 10, () -> 3, batch -> {
+            batches.add(batch.size());
+            return batch.size();
+        }, (page, rows) -> assertNull(loaded.put(page.getIndex(), rows)));
+
+        stage.submit(pageOf(1, 10));
+        stage.submit(pageOf(2, 2));
+        stage.await();
+
+        List<Integer> sizes = new ArrayList<>(batches);
+        Collections.sort(sizes);
+        assertEquals(Arrays.asList(1, 2, 3, 3, 3), sizes);
+        assertEquals(10L, loaded.get(1L));
+        assertEquals(2L, loaded.get(2L));
+    }
+
+
+    @Test
+    void emptyPageIsStillReported() {
+        AtomicInteger reported = new AtomicInteger();
+        LoadStage stage = new LoadStage(threadPool, 2, () -> 3, Page::size, (page, rows) -> reported.incrementAndGet());
+
+        stage.submit(pageOf(1, 0));
+        stage.await();
+
+        assertEquals(1, reported.get());
+    }
+
+
+    @Test
+    void submitBlocksWhileLoadersFallBehind() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        LoadStage stage = new LoadStage(threadPool, 2, () -> 1, batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return batch.size();
+        }, (page, rows) -> {
+        });
+
+        // two batches fill the window, the third one waits
+        CompletableFuture<Void> submitted = CompletableFuture.runAsync(() -> stage.submit(pageOf(1, 3)));
+        assertThrows(TimeoutException.class, () -> submitted.get(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        submitted.get(5, TimeUnit.SECONDS);
+        stage.await();
+    }
+
+
+    @Test
+    void failedBatchFailsTheStage() {
+        GeneralException failure = new SystemException("load failed");
+        AtomicInteger reported = new AtomicInteger();
+        LoadStage stage = new LoadStage(threadPool, 4, () -> 2, batch -> {
+            if (batch.valueOf(0, 0).equals(2)) {
+                throw failure;
+            }
+            return batch.size();
+        }, (page, rows) -> reported.incrementAndGet());
+
+        stage.submit(pageOf(1, 4));
+
+        assertSame(failure, assertThrows(GeneralException.class, stage::await));
+        // a page with a failed batch is never reported as loaded
+        assertEquals(0, reported.get());
+    }
+
+
+    private static Page pageOf(long index, int rows) {
+        List<Row> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(new Row(SCHEMA, new Object[]{i}));
+        }
+        return new Page(index, data);
+    }
+
+}
@@ -0,0 +1,106 @@
+package song.pan.etl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import song.pan.etl.common.exception.GeneralException;
+import song.pan.etl.common.exception.SystemException;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class PageWindowTest {
+
+    private final ThreadPoolExecutor threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+
+
+    @AfterEach
+    void shutdown() {
+        threadPool.shutdownNow();
+    }
+
+
+    @Test
+    void submitBlocksWhileWindowIsFull() throws Exception {
+        PageWindow window = new PageWindow(threadPool, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        window.submit(() -> await(release));
+        window.submit(() -> await(release));
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> window.submit(() -> {
+        }));
+        assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        third.get(5, TimeUnit.SECONDS);
+        window.await();
+    }
+
+
+    @Test
+    void awaitWaitsForAllPages() {
+        PageWindow window = new PageWindow(threadPool, 3);
+        AtomicInteger done = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            window.submit(() -> {
+                sleep(5);
+                done.incrementAndGet();
+            });
+        }
+        window.await();
+        assertEquals(20, done.get());
+    }
+
+
+    @Test
+    void firstFailureIsThrownByAwait() {
+        PageWindow window = new PageWindow(threadPool, 2);
+        IllegalStateException failure = new IllegalStateException("page failed");
+        window.submit(() -> {
+            throw failure;
+        });
+
+        SystemException e = assertThrows(SystemException.class, window::await);
+        assertSame(failure, e.getCause());
+    }
+
+
+    @Test
+    void failureStopsFurtherSubmits() {
+        PageWindow window = new PageWindow(threadPool, 2);
+        GeneralException failure = new SystemException("page failed");
+        window.submit(() -> {
+            throw failure;
+        });
+        assertThrows(GeneralException.class, window::await);
+
+        AtomicInteger runs = new AtomicInteger();
+        GeneralException e = assertThrows(GeneralException.class, () -> window.submit(runs::incrementAndGet));
+        assertSame(failure, e);
+        assertEquals(0, runs.get());
+    }
+
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
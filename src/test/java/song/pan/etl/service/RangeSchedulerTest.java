@@ -0,0 +1,206 @@
+package song.pan.etl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import song.pan.etl.common.exception.GeneralException;
+import song.pan.etl.common.exception.SystemException;
+import song.pan.etl.rdbms.ColumnCodec;
+import song.pan.etl.service.range.RangeSplitters;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class RangeSchedulerTest {
+
+    private final List<ThreadPoolExecutor> threadPools = new ArrayList<>();
+
+
+    @AfterEach
+    void shutdown() {
+        threadPools.forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+
+    @Test
+    void rangesAreUnboundedAtBothEnds() {
+        List<RangeScheduler.Range> ranges = RangeScheduler.rangesOf(Arrays.asList(10, 20));
+
+        assertEquals("[(null, 10], (10, 20], (20, null]]", ranges.toString());
+    }
+
+
+    @Test
+    void everyKeyIsCoveredOnce() {
+        List<Object> bounds = new ArrayList<>();
+        for (int i = 1; i < 100; i++) {
+            bounds.add(BigInteger.valueOf(i * 1000L));
+        }
+        Queue<RangeScheduler.Range> ran = new ConcurrentLinkedQueue<>();
+        new RangeScheduler(threadPool(4), RangeSplitters.of(ColumnCodec.Kind.LONG))
+                .run(RangeScheduler.rangesOf(bounds), (pageIndex, range) -> {
+                    ran.add(range);
+                    sleep(range.hashCode() % 3);
+                    return 1;
+                });
+
+        assertTiled(new ArrayList<>(ran));
+    }
+
+
+    @Test
+    void idleChannelStealsFromSlowChannel() {
+        List<RangeScheduler.Range> ranges = RangeScheduler.rangesOf(Arrays.asList(10, 20, 30));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stolen = new CountDownLatch(1);
+        Map<Object, Thread> threads = new ConcurrentHashMap<>();
+
+        // the first block holds (null, 10] and (10, 20], its channel is held by the first range
+        new RangeScheduler(threadPool(2), null).run(ranges, (pageIndex, range) -> {
+            threads.put(String.valueOf(range.upTo), Thread.currentThread());
+            if (null == range.after) {
+                started.countDown();
+                assertTrue(await(stolen), "(10, 20] not stolen while (null, 10] runs");
+            } else if (Integer.valueOf(20).equals(range.after)) {
+                assertTrue(await(started));
+            } else if (Integer.valueOf(20).equals(range.upTo)) {
+                stolen.countDown();
+            }
+            return 1;
+        });
+
+        assertNotSame(threads.get("10"), threads.get("20"));
+        assertEquals(4, threads.size());
+    }
+
+
+    @Test
+    void lastRangeIsSplitForIdleChannel() {
+        List<RangeScheduler.Range> ranges = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ranges.add(new RangeScheduler.Range(BigInteger.valueOf(i * 1000L), BigInteger.valueOf((i + 1) * 1000L)));
+        }
+        BigInteger lower = BigInteger.valueOf(1000);
+        BigInteger upper = BigInteger.valueOf(2000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch split = new CountDownLatch(1);
+        Queue<RangeScheduler.Range> ran = new ConcurrentLinkedQueue<>();
+
+        // (1000, 2000] is left alone in the first block while (0, 1000] runs
+        new RangeScheduler(threadPool(2), RangeSplitters.of(ColumnCodec.Kind.LONG)).run(ranges, (pageIndex, range) -> {
+            ran.add(range);
+            BigInteger after = (BigInteger) range.after;
+            if (BigInteger.ZERO.equals(after)) {
+                started.countDown();
+                assertTrue(await(split), "(1000, 2000] not split while (0, 1000] runs");
+            } else if (BigInteger.valueOf(2000).equals(after)) {
+                assertTrue(await(started));
+            } else if (after.compareTo(lower) > 0 && after.compareTo(upper) < 0) {
+                split.countDown();
+            }
+            return 1;
+        });
+
+        List<RangeScheduler.Range> all = new ArrayList<>(ran);
+        assertTrue(all.size() > 4);
+        all.add(new RangeScheduler.Range(null, BigInteger.ZERO));
+        all.add(new RangeScheduler.Range(BigInteger.valueOf(4000), null));
+        assertTiled(all);
+    }
+
+
+    @Test
+    void largeRangeIsReplannedToTargetRows() {
+        List<RangeScheduler.Range> ranges = RangeScheduler.rangesOf(Arrays.asList(BigInteger.ZERO, BigInteger.valueOf(1000)));
+        List<RangeScheduler.Range> ran = Collections.synchronizedList(new ArrayList<>());
+
+        new RangeScheduler(threadPool(1), RangeSplitters.of(ColumnCodec.Kind.LONG), () -> 10).run(ranges, (pageIndex, range) -> {
+            ran.add(range);
+            return Math.round(100 * range.share);
+        });
+
+        // (null, 0] measures 100 rows per range, (0, 1000] runs in 10 parts of 10 rows
+        assertEquals(12, ran.size());
+        assertTiled(ran);
+    }
+
+
+    @Test
+    void firstFailureIsThrown() {
+        AtomicInteger runs = new AtomicInteger();
+        GeneralException failure = new SystemException("range failed");
+
+        GeneralException e = assertThrows(GeneralException.class, () -> new RangeScheduler(threadPool(1), null)
+                .run(RangeScheduler.rangesOf(Arrays.asList(1, 2, 3)), (pageIndex, range) -> {
+                    runs.incrementAndGet();
+                    throw failure;
+                }));
+
+        assertSame(failure, e);
+        // the channel stops taking ranges after a failure
+        assertEquals(1, runs.get());
+    }
+
+
+    @Test
+    void unexpectedFailureIsWrapped() {
+        IllegalStateException failure = new IllegalStateException("range failed");
+
+        SystemException e = assertThrows(SystemException.class, () -> new RangeScheduler(threadPool(2), null)
+                .run(RangeScheduler.rangesOf(Collections.singletonList(1)), (pageIndex, range) -> {
+                    throw failure;
+                }));
+
+        assertSame(failure, e.getCause());
+    }
+
+
+    /**
+     * The ranges sorted by lower bound join up from unbounded to unbounded
+     */
+    private static void assertTiled(List<RangeScheduler.Range> ranges) {
+        List<RangeScheduler.Range> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparing(r -> null == r.after ? null : new BigInteger(r.after.toString()),
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        Object after = null;
+        for (RangeScheduler.Range range : sorted) {
+            assertEquals(String.valueOf(after), String.valueOf(range.after), "ranges not tiled: " + sorted);
+            after = range.upTo;
+        }
+        assertNull(after, "ranges not tiled: " + sorted);
+    }
+
+
+    private ThreadPoolExecutor threadPool(int channels) {
+        ThreadPoolExecutor threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(channels);
+        threadPools.add(threadPool);
+        return threadPool;
+    }
+
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(Math.abs(ms));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
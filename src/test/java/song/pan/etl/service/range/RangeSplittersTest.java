@@ -0,0 +1,131 @@
+package song.pan.etl.service.range;
+
+import org.junit.jupiter.api.Test;
+import song.pan.etl.rdbms.ColumnCodec;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Song Pan
+ * @version 1.0.0
+ */
+class RangeSplittersTest {
+
+    @Test
+    void integralKeysSplitIntoEqualWidths() {
+        List<Object> boundaries = RangeSplitters.of(ColumnCodec.Kind.LONG).split(0L, 100L, 4);
+
+        assertEquals(Arrays.asList(BigInteger.valueOf(25), BigInteger.valueOf(50), BigInteger.valueOf(75)), boundaries);
+    }
+
+
+    @Test
+    void integralBoundariesHaveNoDuplicates() {
+        List<Object> boundaries = RangeSplitters.of(ColumnCodec.Kind.INT).split(1, 3, 10);
+
+        assertEquals(Arrays.asList(BigInteger.valueOf(2)), boundaries);
+    }
+
+
+    @Test
+    void unsignedBigintDoesNotOverflow() {
+        BigInteger max = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        List<Object> boundaries = RangeSplitters.of(ColumnCodec.Kind.BIG_INTEGER).split(BigInteger.ZERO, max, 4);
+
+        assertEquals(3, boundaries.size());
+        assertEquals(BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE), boundaries.get(1));
+        assertAscending(boundaries, Comparator.comparing(b -> (BigInteger) b));
+    }
+
+
+    @Test
+    void decimalBoundariesKeepScale() {
+        List<Object> boundaries = RangeSplitters.of(ColumnCodec.Kind.DECIMAL).split(new BigDecimal("0.00"), new BigDecimal("1.00"), 4);
+
+        assertEquals(Arrays.asList(new BigDecimal("0.25"), new BigDecimal("0.50"), new BigDecimal("0.75")), boundaries);
+    }
+
+
+    @Test
+    void doubleKeysAreSplitAsDecimals() {
+        List<Object> boundaries = RangeSplitters.of(ColumnCodec.Kind.DOUBLE).split(0.0, 1.0, 2);
+
+        assertEquals(Arrays.asList(new BigDecimal("0.5")), boundaries);
+    }
+
+
+    @Test
+    void timestampBoundariesAreTruncatedToSeconds() {
+        Timestamp min = new Timestamp(1_600_000_000_123L);
+        Timestamp max = new Timestamp(min.getTime() + 10_000_000L);
+        List<Object> boundaries = RangeSplitters.of(ColumnCodec.Kind.TIMESTAMP).split(min, max, 7);
+
+        assertEquals(6, boundaries.size());
+        for (Object boundary : boundaries) {
+            assertTrue(boundary instanceof Timestamp);
+            long millis = ((Timestamp) boundary).getTime();
+            assertEquals(0, millis % 1000);
+            assertTrue(millis > min.getTime() && millis < max.getTime());
+        }
+        assertAscending(boundaries, Comparator.comparing(b -> (Timestamp) b));
+    }
+
+
+    @Test
+    void dateBoundariesAreDays() {
+        java.sql.Date min = java.sql.Date.valueOf("2021-01-01");
+        java.sql.Date max = java.sql.Date.valueOf("2021-01-03");
+        List<Object> boundaries = RangeSplitters.of(ColumnCodec.Kind.DATE).split(min, max, 10);
+
+        assertTrue(boundaries.size() <= 2);
+        for (Object boundary : boundaries) {
+            assertTrue(boundary instanceof java.sql.Date);
+        }
+        assertAscending(boundaries, Comparator.comparing(b -> (java.sql.Date) b));
+    }
+
+
+    @Test
+    void stringBoundariesKeepCommonPrefixAndAscend() {
+        RangeSplitter splitter = RangeSplitters.of(ColumnCodec.Kind.STRING);
+        List<Object> boundaries = splitter.split("user_a", "user_z", 5);
+
+        assertFalse(splitter.isBounded());
+        assertEquals(4, boundaries.size());
+        for (Object boundary : boundaries) {
+            assertTrue(boundary.toString().startsWith("user_"));
+        }
+        assertAscending(boundaries, Comparator.comparing(Object::toString));
+        assertAscending(boundaries, Comparator.comparing(Object::toString, String.CASE_INSENSITIVE_ORDER));
+    }
+
+
+    @Test
+    void equalStringsAreNotSplit() {
+        assertTrue(RangeSplitters.of(ColumnCodec.Kind.STRING).split("abc", "abc", 5).isEmpty());
+    }
+
+
+    @Test
+    void typesWithoutRangeMathHaveNoSplitter() {
+        assertNull(RangeSplitters.of(ColumnCodec.Kind.BOOLEAN));
+        assertNull(RangeSplitters.of(ColumnCodec.Kind.BYTES));
+        assertNotNull(RangeSplitters.of(ColumnCodec.Kind.TIME));
+    }
+
+
+    private static void assertAscending(List<Object> boundaries, Comparator<Object> order) {
+        for (int i = 1; i < boundaries.size(); i++) {
+            assertTrue(order.compare(boundaries.get(i - 1), boundaries.get(i)) < 0,
+                    "not ascending: " + boundaries.get(i - 1) + ", " + boundaries.get(i));
+        }
+    }
+
+}